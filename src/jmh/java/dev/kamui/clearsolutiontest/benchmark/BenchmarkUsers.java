@@ -0,0 +1,59 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.HeapUserEncoding;
+import dev.kamui.clearsolutiontest.storage.UserEncoding;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic user fixtures shared by the benchmarks.
+ */
+final class BenchmarkUsers {
+
+    static final LocalDate MIN_BIRTH_DATE = LocalDate.of(1950, 1, 1);
+    static final LocalDate MAX_BIRTH_DATE = LocalDate.of(2005, 12, 31);
+
+    private static final String[] COUNTRIES = {"Ukraine", "Poland", "Germany", "France", "Spain"};
+    private static final String[] CITIES = {"Odesa", "Kyiv", "Lviv", "Warsaw", "Berlin", "Paris", "Madrid"};
+
+    private BenchmarkUsers() {
+    }
+
+    /**
+     * Every string of the user is a separate instance, like in a user read from a request.
+     */
+    static User user(long id, SplittableRandom random) {
+        long days = MAX_BIRTH_DATE.toEpochDay() - MIN_BIRTH_DATE.toEpochDay();
+        return User.builder()
+                .id(id)
+                .firstName(copy("Frodo"))
+                .lastName(copy("Baggins"))
+                .email("user" + id + "@gmail.com")
+                .birthDate(LocalDate.ofEpochDay(MIN_BIRTH_DATE.toEpochDay() + random.nextLong(days)))
+                .address(new Address(copy(COUNTRIES[random.nextInt(COUNTRIES.length)]),
+                        copy(CITIES[random.nextInt(CITIES.length)]), copy("State"), copy("042445"), copy("Street")))
+                .phoneNumber(copy("380991815459"))
+                .build();
+    }
+
+    static UserStore store(int size) {
+        return store(size, new HeapUserEncoding());
+    }
+
+    static UserStore store(int size, UserEncoding encoding) {
+        UserStore store = new UserStore(encoding);
+        SplittableRandom random = new SplittableRandom(42);
+        for (long id = 1; id <= size; id++) {
+            store.createIfEmailAbsent(user(id, random));
+        }
+        return store;
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+}
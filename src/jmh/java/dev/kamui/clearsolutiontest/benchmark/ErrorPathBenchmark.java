@@ -0,0 +1,171 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import dev.kamui.clearsolutiontest.GlobalErrorHandler;
+import dev.kamui.clearsolutiontest.cache.UserRangeCache;
+import dev.kamui.clearsolutiontest.changes.UserChangeLog;
+import dev.kamui.clearsolutiontest.controller.UserChangeEmitters;
+import dev.kamui.clearsolutiontest.controller.UserController;
+import dev.kamui.clearsolutiontest.controller.UserRequestParser;
+import dev.kamui.clearsolutiontest.controller.UserResponseWriter;
+import dev.kamui.clearsolutiontest.exception.UserAlreadyExistException;
+import dev.kamui.clearsolutiontest.exception.UserNotFoundException;
+import dev.kamui.clearsolutiontest.format.PayloadFormats;
+import dev.kamui.clearsolutiontest.id.BlockIdGenerator;
+import dev.kamui.clearsolutiontest.search.UserSearchIndex;
+import dev.kamui.clearsolutiontest.stats.UserStatistics;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Throughput of the requests bots keep sending, a duplicate email and updates and deletions of unknown ids,
+ * through the Spring MVC stack and the error handler. {@code before} answers them the way the error handler
+ * used to: a stack trace for every exception, a new error body serialized per response and an error logged
+ * for each. {@code after} is the {@link GlobalErrorHandler}. Logs are formatted and written to nowhere,
+ * so the cost of a real console or file appender isn't included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+// MockMvc takes long to warm up, shorter runs vary by a factor of two
+@Warmup(iterations = 8, time = 2)
+@Measurement(iterations = 8, time = 3)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+    private static final int SIZE = 10_000;
+
+    @Param({"before", "after"})
+    private String errorPath;
+
+    private MockMvc mvc;
+    private final String duplicateUser = """
+            {"first_name": "Frodo", "last_name": "Baggins", "email": "user1@gmail.com", "birth_data": "1990-01-01"}""";
+    private final String update = """
+            {"first_name": "Bilbo"}""";
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        logToNowhere();
+        UserStore store = BenchmarkUsers.store(SIZE);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        BlockIdGenerator idGenerator = new BlockIdGenerator(64);
+        // created users get ids after those of the preloaded ones
+        idGenerator.advancePast(SIZE);
+        UserController controller = new UserController(store,
+                new UserRangeCache(store, new SimpleMeterRegistry(), false, 0),
+                new UserSearchIndex(store, new SimpleMeterRegistry()), new UserStatistics(store, 18, 10, 6),
+                new UserChangeEmitters(new UserChangeLog(store, new SimpleMeterRegistry(), 65536),
+                        new SimpleMeterRegistry(), Duration.ofMillis(100), 1, Duration.ZERO, Duration.ofSeconds(5)),
+                new UserResponseWriter(objectMapper), new UserRequestParser(18, idGenerator, validator, objectMapper),
+                new PayloadFormats(objectMapper, Jackson2ObjectMapperBuilder.json()), 1000);
+        Object errorHandler = errorPath.equals("before")
+                ? new StackTraceErrorHandler(new SimpleMeterRegistry())
+                : new GlobalErrorHandler(new SimpleMeterRegistry(), 10);
+        mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(errorHandler)
+                .build();
+    }
+
+    @Benchmark
+    public int duplicateEmail() throws Exception {
+        return mvc.perform(post("/api/v1/users").contentType(MediaType.APPLICATION_JSON).content(duplicateUser))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int updateUnknownId() throws Exception {
+        return mvc.perform(put("/api/v1/users/{id}", SIZE + 1).contentType(MediaType.APPLICATION_JSON).content(update))
+                .andReturn().getResponse().getStatus();
+    }
+
+    @Benchmark
+    public int deleteUnknownId() throws Exception {
+        return mvc.perform(delete("/api/v1/users/{id}", SIZE + 1))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private static void logToNowhere() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %-5level [%thread] %logger{36} : %msg%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.detachAndStopAllAppenders();
+        root.addAppender(appender);
+        root.setLevel(ch.qos.logback.classic.Level.INFO);
+    }
+
+    /**
+     * The error handling before stackless exceptions, pre-serialized bodies and throttled logging.
+     */
+    @RestControllerAdvice
+    static class StackTraceErrorHandler {
+        private static final org.slf4j.Logger log = LoggerFactory.getLogger(StackTraceErrorHandler.class);
+
+        private final MeterRegistry meterRegistry;
+
+        StackTraceErrorHandler(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @ExceptionHandler(UserNotFoundException.class)
+        protected ResponseEntity<?> handleUserNotFoundException(UserNotFoundException e) {
+            RuntimeException withStackTrace = new RuntimeException(e.getMessage());
+            meterRegistry.counter("users.errors", "exception", e.getClass().getSimpleName()).increment();
+            log.error("{}", withStackTrace.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ResponseApiError(new ErrorDetails(404, "user not found")));
+        }
+
+        @ExceptionHandler(UserAlreadyExistException.class)
+        protected ResponseEntity<?> handleUserAlreadyExistException(UserAlreadyExistException e) {
+            RuntimeException withStackTrace = new RuntimeException(e.getMessage());
+            meterRegistry.counter("users.errors", "exception", e.getClass().getSimpleName()).increment();
+            log.error("{}", withStackTrace.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ResponseApiError(new ErrorDetails(400, "user with this email is already registered")));
+        }
+
+        @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+        record ResponseApiError(ErrorDetails errorDetails) {
+        }
+
+        record ErrorDetails(int code, String message) {
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import dev.kamui.clearsolutiontest.ClearSolutionTestApplication;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * The application running in a separate JVM, started with the same {@code java} and class path
+ * as the benchmark, and a client that sends it bursts of concurrent requests, each on its own connection.
+ */
+final class HttpLoad implements AutoCloseable {
+
+    private final Process application;
+    private final int port;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private HttpLoad(Process application, int port) {
+        this.application = application;
+        this.port = port;
+    }
+
+    static HttpLoad start(int port, String... arguments) throws Exception {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<String> command = new ArrayList<>(List.of(java, "-Xmx2g", "-cp", System.getProperty("java.class.path"),
+                ClearSolutionTestApplication.class.getName(), "--server.port=" + port));
+        command.addAll(Arrays.asList(arguments));
+        Process application = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        HttpLoad load = new HttpLoad(application, port);
+        load.awaitStarted();
+        return load;
+    }
+
+    HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path));
+    }
+
+    HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sends all requests at once and waits for every response.
+     */
+    Burst burst(int requests, IntFunction<HttpRequest> request, int expectedStatus) {
+        List<CompletableFuture<Long>> responses = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            long started = System.nanoTime();
+            responses.add(client.sendAsync(request.apply(i), HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> error == null && response.statusCode() == expectedStatus
+                            ? System.nanoTime() - started : -1L));
+        }
+        long[] millis = responses.stream()
+                .map(CompletableFuture::join)
+                .filter(nanos -> nanos >= 0)
+                .mapToLong(TimeUnit.NANOSECONDS::toMillis)
+                .sorted()
+                .toArray();
+        if (millis.length == 0) {
+            return new Burst(0, 0, requests);
+        }
+        return new Burst(millis[millis.length / 2], millis[(int) (millis.length * 0.99)], requests - millis.length);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        application.destroy();
+        application.waitFor();
+    }
+
+    private void awaitStarted() throws Exception {
+        HttpRequest request = request("/api/v1/users/0").DELETE().build();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (true) {
+            try {
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+                return;
+            } catch (ConnectException e) {
+                if (System.nanoTime() > deadline || !application.isAlive()) {
+                    throw new IOException("Application did not start", e);
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    static String userJson(long id) {
+        return """
+                {"first_name": "Frodo", "last_name": "Baggins", "email": "user%d@gmail.com",
+                 "birth_data": "%s", "phone_number": "380991815459"}"""
+                .formatted(id, BenchmarkUsers.MIN_BIRTH_DATE.plusDays(id % 20_000))
+                .replace("\n", "");
+    }
+
+    static String ndjson(long fromId, long toId) {
+        StringBuilder body = new StringBuilder();
+        for (long id = fromId; id < toId; id++) {
+            body.append(userJson(id)).append('\n');
+        }
+        return body.toString();
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    record Burst(long p50Millis, long p99Millis, long failed) {
+    }
+}
@@ -0,0 +1,61 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import dev.kamui.clearsolutiontest.id.BlockIdGenerator;
+import dev.kamui.clearsolutiontest.id.IdGenerator;
+import dev.kamui.clearsolutiontest.id.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Id allocation under contention from 64 threads.
+ * {@code atomic} is a single shared counter for reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class IdGeneratorBenchmark {
+
+    @Param({"atomic", "block", "snowflake"})
+    private String generator;
+
+    private IdGenerator idGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        idGenerator = switch (generator) {
+            case "atomic" -> new AtomicIdGenerator();
+            case "block" -> new BlockIdGenerator(64);
+            case "snowflake" -> new SnowflakeIdGenerator(1);
+            default -> throw new IllegalArgumentException(generator);
+        };
+    }
+
+    @Benchmark
+    public long nextId() {
+        return idGenerator.nextId();
+    }
+
+    /**
+     * A single shared counter, the baseline the other generators are measured against.
+     */
+    private static final class AtomicIdGenerator implements IdGenerator {
+
+        private final AtomicLong next = new AtomicLong();
+
+        @Override
+        public long nextId() {
+            return next.incrementAndGet();
+        }
+
+        @Override
+        public void advancePast(long id) {
+            next.accumulateAndGet(id, Math::max);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kamui.clearsolutiontest.dto.UserDataListResponse;
+import dev.kamui.clearsolutiontest.format.PayloadFormats;
+import dev.kamui.clearsolutiontest.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading a {@code getUsers} response as JSON, Smile and CBOR.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadFormatBenchmark {
+
+    @Param({"100", "10000"})
+    private int pageSize;
+
+    @Param({"application/json", PayloadFormats.APPLICATION_SMILE_VALUE, "application/cbor"})
+    private String format;
+
+    private ObjectMapper mapper;
+    private UserDataListResponse response;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        mapper = new PayloadFormats(json, Jackson2ObjectMapperBuilder.json()).mapper(MediaType.parseMediaType(format));
+        List<User> users = BenchmarkUsers.store(100_000).findByBirthDateBetween(BenchmarkUsers.MIN_BIRTH_DATE,
+                LocalDate.of(2100, 1, 1), null, pageSize);
+        response = new UserDataListResponse(200, users);
+        payload = mapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        return mapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public UserDataListResponse read() throws IOException {
+        return mapper.readValue(payload, UserDataListResponse.class);
+    }
+}
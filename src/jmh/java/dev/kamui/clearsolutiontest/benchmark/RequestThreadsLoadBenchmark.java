@@ -0,0 +1,81 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bursts of 10k concurrent create requests, each on its own connection, against the application
+ * running on the Tomcat thread pool or on virtual threads. Writes use the {@code group} sync mode,
+ * so every request blocks until its log record is on disk, for up to {@code syncInterval}.
+ * The application runs in a separate JVM started with the same {@code java} as this one,
+ * which must be Java 21 or later for virtual threads.
+ * The percentiles of a burst are reported in the {@code p50Millis} and {@code p99Millis} secondary metrics.
+ * Secondary metrics are summed over the measurement iterations, so there is only one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+@Fork(1)
+public class RequestThreadsLoadBenchmark {
+
+    private static final int PORT = 18080;
+    private static final int CONNECTIONS = 10_000;
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    @Param({"10ms", "500ms"})
+    private String syncInterval;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private Path directory;
+    private HttpLoad load;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Latency {
+        public long p50Millis;
+        public long p99Millis;
+        public long failed;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("users-load");
+        load = HttpLoad.start(PORT,
+                "--server.tomcat.max-connections=" + (CONNECTIONS + 1000),
+                "--server.tomcat.accept-count=1000",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--user.persistence.enabled=true",
+                "--user.persistence.sync-mode=group",
+                "--user.persistence.sync-interval=" + syncInterval,
+                "--user.persistence.directory=" + directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        load.close();
+        HttpLoad.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void createUsers(Latency latency) {
+        HttpLoad.Burst burst = load.burst(CONNECTIONS, i -> load.request("/api/v1/users")
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(HttpLoad.userJson(ids.incrementAndGet())))
+                .build(), 201);
+        latency.p50Millis = burst.p50Millis();
+        latency.p99Millis = burst.p99Millis();
+        latency.failed = burst.failed();
+    }
+}
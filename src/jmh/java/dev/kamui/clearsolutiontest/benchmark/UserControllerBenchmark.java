@@ -0,0 +1,133 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kamui.clearsolutiontest.cache.UserRangeCache;
+import dev.kamui.clearsolutiontest.changes.UserChangeLog;
+import dev.kamui.clearsolutiontest.controller.UserChangeEmitters;
+import dev.kamui.clearsolutiontest.controller.UserController;
+import dev.kamui.clearsolutiontest.controller.UserRequestParser;
+import dev.kamui.clearsolutiontest.controller.UserResponseWriter;
+import dev.kamui.clearsolutiontest.dto.UserDataListResponse;
+import dev.kamui.clearsolutiontest.dto.UserDataResponse;
+import dev.kamui.clearsolutiontest.dto.UserRequest;
+import dev.kamui.clearsolutiontest.dto.UserUpdateRequest;
+import dev.kamui.clearsolutiontest.format.PayloadFormats;
+import dev.kamui.clearsolutiontest.id.BlockIdGenerator;
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.search.UserSearchIndex;
+import dev.kamui.clearsolutiontest.stats.UserStatistics;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The controller and storage hot paths, called directly without the servlet stack.
+ * Request validation is done explicitly, as {@code @Valid} would.
+ * {@link UserControllerConcurrentBenchmark} runs the same benchmarks from several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserControllerBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    private final LocalDate from = LocalDate.of(1980, 1, 1);
+    private final LocalDate to = LocalDate.of(1990, 1, 1);
+    // emails of created users, unique across threads and iterations
+    private final AtomicLong emails = new AtomicLong();
+
+    private UserStore store;
+    private UserController controller;
+    private Validator validator;
+    private ObjectMapper objectMapper;
+    private UserDataListResponse page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = BenchmarkUsers.store(size);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        UserRangeCache rangeCache = new UserRangeCache(store, new SimpleMeterRegistry(), false, 0);
+        UserSearchIndex searchIndex = new UserSearchIndex(store, new SimpleMeterRegistry());
+        UserChangeEmitters changeEmitters = new UserChangeEmitters(
+                new UserChangeLog(store, new SimpleMeterRegistry(), 65536), new SimpleMeterRegistry(),
+                Duration.ofMillis(100), 1, Duration.ZERO, Duration.ofSeconds(5));
+        BlockIdGenerator idGenerator = new BlockIdGenerator(64);
+        // created users get ids after those of the preloaded ones
+        idGenerator.advancePast(size);
+        controller = new UserController(store, rangeCache, searchIndex,
+                new UserStatistics(store, 18, 10, 6), changeEmitters, new UserResponseWriter(objectMapper),
+                new UserRequestParser(18, idGenerator, validator, objectMapper),
+                new PayloadFormats(objectMapper, Jackson2ObjectMapperBuilder.json()), 1000);
+        emails.set(size);
+        page = controller.getUsers(from, to, PAGE_SIZE, null, new Request().webRequest).getBody();
+    }
+
+    @Benchmark
+    public ResponseEntity<UserDataResponse> createUser() {
+        UserRequest request = new UserRequest();
+        request.setFirstName("Frodo");
+        request.setLastName("Baggins");
+        request.setEmail("created" + emails.incrementAndGet() + "@gmail.com");
+        request.setBirthData(LocalDate.of(1990, 1, 1));
+        request.setAddress(new Address("Ukraine", "Odesa", "State", "042445", "Street"));
+        request.setPhoneNumber("380991815459");
+        validator.validate(request);
+        return controller.createUser(request);
+    }
+
+    @Benchmark
+    public Optional<User> findById() {
+        return store.findById(randomId());
+    }
+
+    @Benchmark
+    public ResponseEntity<UserDataListResponse> getUsersPage(Request request) {
+        return controller.getUsers(from, to, PAGE_SIZE, null, request.webRequest);
+    }
+
+    @Benchmark
+    public ResponseEntity<UserDataResponse> updateUser() {
+        UserUpdateRequest request = new UserUpdateRequest();
+        request.setFirstName(ThreadLocalRandom.current().nextBoolean() ? "Frodo" : "Bilbo");
+        validator.validate(request);
+        return controller.updateUser(randomId(), null, request);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @State(Scope.Thread)
+    public static class Request {
+        // without If-None-Match, so every page is read
+        private final ServletWebRequest webRequest = new ServletWebRequest(new MockHttpServletRequest("GET", "/api/v1/users"));
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(size) + 1;
+    }
+}
@@ -0,0 +1,10 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * {@link UserControllerBenchmark} with 8 threads sharing one store, to show contention between them.
+ */
+@Threads(8)
+public class UserControllerConcurrentBenchmark extends UserControllerBenchmark {
+}
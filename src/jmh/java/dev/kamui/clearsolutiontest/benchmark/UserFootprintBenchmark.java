@@ -0,0 +1,55 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import dev.kamui.clearsolutiontest.storage.CompactUserEncoding;
+import dev.kamui.clearsolutiontest.storage.HeapUserEncoding;
+import dev.kamui.clearsolutiontest.storage.UserEncoding;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained heap per stored user, indexes included, for each user encoding.
+ * The result is reported in the {@code bytesPerUser} secondary metric, which is summed
+ * over the measurement iterations, so there is only one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserFootprintBenchmark {
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"heap", "compact"})
+    private String encoding;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerUser;
+    }
+
+    @Benchmark
+    public UserStore fill(Footprint footprint) {
+        long before = usedHeap();
+        UserStore store = BenchmarkUsers.store(size, encoding());
+        footprint.bytesPerUser = (usedHeap() - before) / size;
+        return store;
+    }
+
+    private UserEncoding encoding() {
+        return encoding.equals("compact") ? new CompactUserEncoding() : new HeapUserEncoding();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
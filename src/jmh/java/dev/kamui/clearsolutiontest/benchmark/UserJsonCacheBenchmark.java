@@ -0,0 +1,55 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kamui.clearsolutiontest.cache.UserJsonCache;
+import dev.kamui.clearsolutiontest.cache.UserJsonCacheConfig;
+import dev.kamui.clearsolutiontest.dto.UserDataListResponse;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a {@code getUsers} response read from the store, with and without the JSON cache.
+ * The cache holds every user of the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserJsonCacheBenchmark {
+
+    @Param({"100", "10000"})
+    private int pageSize;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private UserStore store;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = BenchmarkUsers.store(100_000);
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (cached) {
+            builder.modulesToInstall(UserJsonCacheConfig.module(new UserJsonCache(256 << 20, new SimpleMeterRegistry())));
+        }
+        objectMapper = builder.build();
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        List<User> users = store.findByBirthDateBetween(BenchmarkUsers.MIN_BIRTH_DATE, LocalDate.of(2100, 1, 1),
+                null, pageSize);
+        return objectMapper.writeValueAsBytes(new UserDataListResponse(200, users));
+    }
+}
@@ -0,0 +1,64 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import dev.kamui.clearsolutiontest.id.BlockIdGenerator;
+import dev.kamui.clearsolutiontest.persistence.SyncMode;
+import dev.kamui.clearsolutiontest.persistence.UserPersistence;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup recovery time: loading a snapshot of {@code size} users and replaying
+ * a log tail that updates a tenth of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserRecoveryBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int size;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("user-recovery");
+        UserStore store = BenchmarkUsers.store(size);
+        UserPersistence persistence = persistence(store);
+        persistence.recover();
+        persistence.snapshot();
+        for (long id = 1; id <= size; id += 10) {
+            store.update(id, user -> user.toBuilder().phoneNumber("380991815460").build());
+        }
+        persistence.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public UserStore recover() throws IOException {
+        UserStore store = new UserStore();
+        UserPersistence persistence = persistence(store);
+        persistence.recover();
+        persistence.close();
+        return store;
+    }
+
+    private UserPersistence persistence(UserStore store) {
+        return new UserPersistence(store, new BlockIdGenerator(64), directory, 64 << 20, SyncMode.INTERVAL,
+                Duration.ofMillis(10), Duration.ofDays(1));
+    }
+}
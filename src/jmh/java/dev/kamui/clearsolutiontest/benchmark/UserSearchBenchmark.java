@@ -0,0 +1,56 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.search.UserSearch;
+import dev.kamui.clearsolutiontest.search.UserSearchIndex;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A page of a selective search, by country, city and a year of birth dates (about 1 user in 1900),
+ * through the bitmap indexes and by filtering a scan of the whole store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserSearchBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private final UserSearch search = new UserSearch("Ukraine", "Odesa", null, null, null, null,
+            LocalDate.of(1980, 3, 14), LocalDate.of(1981, 3, 15));
+
+    private UserStore store;
+    private UserSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = BenchmarkUsers.store(size);
+        index = new UserSearchIndex(store, new SimpleMeterRegistry());
+        index.search(search, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<User> bitmapIndex() {
+        return index.search(search, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<User> scan() {
+        return store.findAll()
+                .filter(search::matches)
+                .limit(PAGE_SIZE)
+                .toList();
+    }
+}
@@ -0,0 +1,51 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Birth date range queries over stores of growing size.
+ * {@code indexedPage} reads a fixed number of users from the sorted index and should stay flat
+ * as the store grows, while {@code scanPage} repeats the former full-storage filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserStoreRangeBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private final LocalDate from = LocalDate.of(1980, 1, 1);
+    private final LocalDate to = LocalDate.of(1990, 1, 1);
+
+    private UserStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = BenchmarkUsers.store(size);
+    }
+
+    @Benchmark
+    public List<User> indexedPage() {
+        return store.findByBirthDateBetween(from, to).limit(PAGE_SIZE).toList();
+    }
+
+    @Benchmark
+    public List<User> scanPage() {
+        return store.findAll()
+                .filter(user -> user.getBirthDate().isAfter(from) && user.getBirthDate().isBefore(to))
+                .toList()
+                .subList(0, PAGE_SIZE);
+    }
+}
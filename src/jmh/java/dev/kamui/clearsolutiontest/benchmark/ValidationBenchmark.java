@@ -0,0 +1,113 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import dev.kamui.clearsolutiontest.dto.UserRequest;
+import dev.kamui.clearsolutiontest.validation.EmailAddressValidator;
+import dev.kamui.clearsolutiontest.validation.PhoneNumberValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Past;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Email and phone checks by the {@code @Pattern} regexes and by the hand-written validators, on their own
+ * and as part of validating a whole create request with Hibernate Validator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private static final Pattern EMAIL = Pattern.compile("[\\w-.]+@([\\w-]+\\.)+[\\w-]{2,4}");
+    private static final Pattern PHONE =
+            Pattern.compile("^[+]?[(]?[0-9]{3}[)]?[-\\s.]?[0-9]{3}[-\\s.]?[0-9]{4,6}$");
+
+    // not final, so the JIT can't fold the checks away
+    private String email = "frodo.baggins@shire.co.uk";
+    private String phone = "+(380)991815459";
+
+    private Validator validator;
+    private UserRequest request;
+    private RegexUserRequest regexRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        request = new UserRequest();
+        regexRequest = new RegexUserRequest();
+        request.setFirstName("Frodo");
+        request.setLastName("Baggins");
+        request.setEmail(email);
+        request.setBirthData(LocalDate.of(1990, 1, 1));
+        request.setPhoneNumber(phone);
+        regexRequest.setEmail(email);
+        regexRequest.setPhoneNumber(phone);
+    }
+
+    @Benchmark
+    public boolean emailRegex() {
+        return EMAIL.matcher(email).matches();
+    }
+
+    @Benchmark
+    public boolean emailScanner() {
+        return EmailAddressValidator.isEmailAddress(email);
+    }
+
+    @Benchmark
+    public boolean phoneRegex() {
+        return PHONE.matcher(phone).matches();
+    }
+
+    @Benchmark
+    public boolean phoneScanner() {
+        return PhoneNumberValidator.isPhoneNumber(phone);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<RegexUserRequest>> validateRegexConstraints() {
+        return validator.validate(regexRequest);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<UserRequest>> validateRequest() {
+        return validator.validate(request);
+    }
+
+    /**
+     * {@link UserRequest} as validated before, with the same constraints besides the regexes.
+     */
+    @Data
+    public static class RegexUserRequest {
+        @NotBlank
+        @Size(min = 2, max = 20)
+        private String firstName = "Frodo";
+
+        @NotBlank
+        @Size(min = 2, max = 20)
+        private String lastName = "Baggins";
+
+        @NotNull
+        @jakarta.validation.constraints.Pattern(regexp = "[\\w-.]+@([\\w-]+\\.)+[\\w-]{2,4}", message = "must be a valid e-mail address")
+        private String email;
+
+        @NotNull
+        @Past
+        private LocalDate birthData = LocalDate.of(1990, 1, 1);
+
+        @jakarta.validation.constraints.Pattern(regexp = "^[+]?[(]?[0-9]{3}[)]?[-\\s.]?[0-9]{3}[-\\s.]?[0-9]{4,6}$", message = "must be a valid phone_number")
+        private String phoneNumber;
+    }
+}
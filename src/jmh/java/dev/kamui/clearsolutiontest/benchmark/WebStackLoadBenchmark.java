@@ -0,0 +1,82 @@
+package dev.kamui.clearsolutiontest.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bursts of 10k concurrent requests, each on its own connection, against the Spring MVC and the
+ * WebFlux API over a store of 100k users. Needs the {@code reactive} profile next to {@code benchmark},
+ * e.g. {@code mvn -Pbenchmark,reactive verify -Djmh.args=WebStackLoad}.
+ * The percentiles of a burst are reported in the {@code p50Millis} and {@code p99Millis} secondary metrics.
+ * Secondary metrics are summed over the measurement iterations, so there is only one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+@Fork(1)
+public class WebStackLoadBenchmark {
+
+    private static final int PORT = 18081;
+    private static final int CONNECTIONS = 10_000;
+    private static final int USERS = 100_000;
+
+    @Param({"servlet", "reactive"})
+    private String stack;
+
+    private final AtomicLong ids = new AtomicLong(USERS);
+
+    private HttpLoad load;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Latency {
+        public long p50Millis;
+        public long p99Millis;
+        public long failed;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        load = HttpLoad.start(PORT,
+                "--spring.main.web-application-type=" + stack,
+                "--server.tomcat.max-connections=" + (CONNECTIONS + 1000),
+                "--server.tomcat.accept-count=1000");
+        load.send(load.request("/api/v1/users/bulk")
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(HttpLoad.ndjson(0, USERS)))
+                .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        load.close();
+    }
+
+    @Benchmark
+    public void getUsersPage(Latency latency) {
+        record(latency, load.burst(CONNECTIONS, i -> load.request("/api/v1/users?From=1960-01-01&To=2000-01-01&limit=100")
+                .timeout(Duration.ofMinutes(2))
+                .build(), 200));
+    }
+
+    @Benchmark
+    public void createUser(Latency latency) {
+        record(latency, load.burst(CONNECTIONS, i -> load.request("/api/v1/users")
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(HttpLoad.userJson(ids.incrementAndGet())))
+                .build(), 201));
+    }
+
+    private static void record(Latency latency, HttpLoad.Burst burst) {
+        latency.p50Millis = burst.p50Millis();
+        latency.p99Millis = burst.p99Millis();
+        latency.failed = burst.failed();
+    }
+}
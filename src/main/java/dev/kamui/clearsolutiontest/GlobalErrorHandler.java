@@ -1,35 +1,76 @@
 package dev.kamui.clearsolutiontest;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import dev.kamui.clearsolutiontest.exception.InvalidAgeException;
+import dev.kamui.clearsolutiontest.exception.InvalidCursorException;
+import dev.kamui.clearsolutiontest.exception.ServiceOverloadedException;
 import dev.kamui.clearsolutiontest.exception.UserAlreadyExistException;
 import dev.kamui.clearsolutiontest.exception.UserNotFoundException;
+import dev.kamui.clearsolutiontest.exception.UserVersionConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers exceptions with an {@code error_details} body. Bodies with a fixed message are serialized once,
+ * errors are logged at most {@code user.errors.logs-per-second} times a second, and the error counter
+ * of every exception type is looked up once, so that bad requests cost little more than good ones.
+ */
 @RestControllerAdvice
 public class GlobalErrorHandler {
     private static final Logger log = LoggerFactory.getLogger(GlobalErrorHandler.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    static final ResponseEntity<byte[]> USER_NOT_FOUND = error(HttpStatus.NOT_FOUND, "user not found");
+    static final ResponseEntity<byte[]> INVALID_AGE = error(HttpStatus.BAD_REQUEST, "age is less than 18");
+    static final ResponseEntity<byte[]> USER_ALREADY_EXISTS =
+            error(HttpStatus.BAD_REQUEST, "user with this email is already registered");
+    static final ResponseEntity<byte[]> INVALID_CURSOR = error(HttpStatus.BAD_REQUEST, "invalid cursor");
+    static final ResponseEntity<byte[]> VERSION_CONFLICT =
+            error(HttpStatus.PRECONDITION_FAILED, "user was modified by another request");
+    static final ResponseEntity<byte[]> MISSING_PARAMS = error(HttpStatus.BAD_REQUEST, "missing params");
+    private static final byte[] SERVICE_OVERLOADED =
+            serialize(HttpStatus.SERVICE_UNAVAILABLE, "server is overloaded, retry later");
+
+    private final MeterRegistry meterRegistry;
+    private final ThrottledLogger errorLog;
+    private final Map<Class<?>, Counter> errorCounters = new ConcurrentHashMap<>();
+
+    public GlobalErrorHandler(MeterRegistry meterRegistry,
+                              @Value("${user.errors.logs-per-second:10}") int logsPerSecond) {
+        this.meterRegistry = meterRegistry;
+        this.errorLog = new ThrottledLogger(log, logsPerSecond);
+    }
 
     @ExceptionHandler(UserNotFoundException.class)
     protected ResponseEntity<?> handleUserNotFoundException(UserNotFoundException e) {
-        log.error("{}", e.getMessage());
-        ResponseApiError responseApiError = new ResponseApiError(
-                new ErrorDetails(404, "user not found"));
-        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(responseApiError);
+        count(e);
+        errorLog.error("{}", e.getMessage());
+        return USER_NOT_FOUND;
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     protected ResponseEntity<?> handleMethodArgumentNotValidException(MethodArgumentNotValidException e) {
+        count(e);
         String errorMsg = e.getBindingResult().getAllErrors().get(0).getDefaultMessage();
-        log.error("{}", errorMsg);
+        errorLog.error("{}", errorMsg);
         ResponseApiError responseApiError = new ResponseApiError(
                 new ErrorDetails(400, errorMsg));
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(responseApiError);
@@ -37,33 +78,76 @@ public class GlobalErrorHandler {
 
     @ExceptionHandler(InvalidAgeException.class)
     protected ResponseEntity<?> handleInvalidAgeException(InvalidAgeException e) {
-        log.error("{}", e.getMessage());
-        ResponseApiError responseApiError = new ResponseApiError(
-                new ErrorDetails(400, "age is less than 18"));
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(responseApiError);
+        count(e);
+        errorLog.error("{}", e.getMessage());
+        return INVALID_AGE;
     }
 
     @ExceptionHandler(UserAlreadyExistException.class)
     protected ResponseEntity<?> handleUserAlreadyExistException(UserAlreadyExistException e) {
-        log.error("{}", e.getMessage());
-        ResponseApiError responseApiError = new ResponseApiError(
-                new ErrorDetails(400, "user with this email is already registered"));
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(responseApiError);
+        count(e);
+        errorLog.error("{}", e.getMessage());
+        return USER_ALREADY_EXISTS;
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    protected ResponseEntity<?> handleInvalidCursorException(InvalidCursorException e) {
+        count(e);
+        errorLog.error("{}", e.getMessage());
+        return INVALID_CURSOR;
+    }
+
+    @ExceptionHandler(UserVersionConflictException.class)
+    protected ResponseEntity<?> handleUserVersionConflictException(UserVersionConflictException e) {
+        count(e);
+        errorLog.error("{}", e.getMessage());
+        return VERSION_CONFLICT;
+    }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    protected ResponseEntity<?> handleServiceOverloadedException(ServiceOverloadedException e) {
+        count(e);
+        // not logged as an error: under overload that would be a log line for every shed request
+        log.debug("{}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(e.getRetryAfter().toSeconds(), 1)))
+                .body(SERVICE_OVERLOADED);
+    }
 
     @ExceptionHandler(MissingServletRequestParameterException.class)
     protected ResponseEntity<?> handleMissingServletRequestParameterException(MissingServletRequestParameterException e) {
-        log.error("{}", e.getMessage());
-        ResponseApiError responseApiError = new ResponseApiError(
-                new ErrorDetails(400, "missing params"));
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(responseApiError);
+        count(e);
+        errorLog.error("{}", e.getMessage());
+        return MISSING_PARAMS;
+    }
+
+    private void count(Exception e) {
+        errorCounters.computeIfAbsent(e.getClass(),
+                type -> meterRegistry.counter("users.errors", "exception", type.getSimpleName())).increment();
+    }
+
+    /**
+     * @return a response with a body serialized once, to be returned for every such error
+     */
+    static ResponseEntity<byte[]> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(serialize(status, message));
+    }
+
+    private static byte[] serialize(HttpStatus status, String message) {
+        try {
+            return objectMapper.writeValueAsBytes(new ResponseApiError(new ErrorDetails(status.value(), message)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
-    private record ResponseApiError(ErrorDetails errorDetails) {
+    record ResponseApiError(ErrorDetails errorDetails) {
     }
 
-    private record ErrorDetails(int code, String message) {
+    record ErrorDetails(int code, String message) {
     }
 }
@@ -0,0 +1,54 @@
+package dev.kamui.clearsolutiontest;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Logs errors up to a number per second and counts the rest, which are reported as one line
+ * at the start of the next second that logs anything. Writers never block each other.
+ */
+final class ThrottledLogger {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger log;
+    private final int perSecond;
+    private final LongSupplier clock;
+    private final AtomicLong second = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong logged = new AtomicLong();
+    private final LongAdder suppressed = new LongAdder();
+
+    ThrottledLogger(Logger log, int perSecond) {
+        this(log, perSecond, System::nanoTime);
+    }
+
+    ThrottledLogger(Logger log, int perSecond, LongSupplier clock) {
+        this.log = log;
+        this.perSecond = perSecond;
+        this.clock = clock;
+    }
+
+    void error(String format, Object argument) {
+        if (!log.isErrorEnabled()) {
+            return;
+        }
+        long now = clock.getAsLong() / NANOS_PER_SECOND;
+        long current = second.get();
+        if (now != current && second.compareAndSet(current, now)) {
+            logged.set(0);
+            long dropped = suppressed.sumThenReset();
+            if (dropped > 0) {
+                log.error("{} more errors were not logged", dropped);
+            }
+        }
+        if (logged.incrementAndGet() <= perSecond) {
+            log.error(format, argument);
+        } else {
+            suppressed.increment();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package dev.kamui.clearsolutiontest.admission;
+
+import dev.kamui.clearsolutiontest.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Admits user API requests up to an {@link AimdLimiter} each for reads and writes, and rejects the rest
+ * right away with a {@link ServiceOverloadedException}, answered with 503 and {@code Retry-After}, instead of
+ * letting them queue. Other streaming responses give their permit back once the handler thread is released,
+ * without a latency sample, as their duration depends on the client.
+ * <p>
+ * Bulk creations, batch updates, exports and streamed listings run for as long as their bodies take, which says
+ * nothing about congestion, so they have a fixed limit of their own, {@code user.admission.bulk.limit}, and never
+ * sample latency. Streamed ones keep their permit until the async dispatch that ends the stream completes.
+ */
+@Component
+@ConditionalOnProperty(name = "user.admission.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT = AdmissionInterceptor.class.getName() + ".permit";
+    private static final String USERS_PATH = "/api/v1/users";
+    private static final Set<String> BULK_PATHS = Set.of(USERS_PATH + "/bulk", USERS_PATH + "/batch",
+            USERS_PATH + "/export");
+
+    private final Kind reads;
+    private final Kind writes;
+    private final Kind bulk;
+    private final Duration retryAfter;
+
+    public AdmissionInterceptor(MeterRegistry meterRegistry,
+                                @Value("${user.admission.latency-target:100ms}") Duration latencyTarget,
+                                @Value("${user.admission.min-limit:4}") int minLimit,
+                                @Value("${user.admission.read.initial-limit:100}") int readInitialLimit,
+                                @Value("${user.admission.read.max-limit:1000}") int readMaxLimit,
+                                @Value("${user.admission.write.initial-limit:50}") int writeInitialLimit,
+                                @Value("${user.admission.write.max-limit:500}") int writeMaxLimit,
+                                @Value("${user.admission.bulk.limit:4}") int bulkLimit,
+                                @Value("${user.admission.retry-after:1s}") Duration retryAfter) {
+        reads = new Kind("read", new AimdLimiter(readInitialLimit, minLimit, readMaxLimit, latencyTarget.toNanos()),
+                true, meterRegistry);
+        writes = new Kind("write", new AimdLimiter(writeInitialLimit, minLimit, writeMaxLimit, latencyTarget.toNanos()),
+                true, meterRegistry);
+        bulk = new Kind("bulk", new AimdLimiter(bulkLimit, bulkLimit, bulkLimit, latencyTarget.toNanos()),
+                false, meterRegistry);
+        this.retryAfter = retryAfter;
+    }
+
+    public AimdLimiter readLimiter() {
+        return reads.limiter;
+    }
+
+    public AimdLimiter writeLimiter() {
+        return writes.limiter;
+    }
+
+    public AimdLimiter bulkLimiter() {
+        return bulk.limiter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            // an async dispatch completes a request that was admitted already
+            return true;
+        }
+        Kind kind = kindOf(request);
+        int inFlightBefore = kind.limiter.tryAcquire();
+        if (inFlightBefore < 0) {
+            kind.rejected.increment();
+            throw new ServiceOverloadedException("Too many " + kind.name + " requests in flight: " + kind.limiter.limit(),
+                    retryAfter);
+        }
+        kind.admitted.increment();
+        request.setAttribute(PERMIT, new Permit(kind, System.nanoTime(), inFlightBefore));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(PERMIT) instanceof Permit permit && permit.kind != bulk) {
+            request.removeAttribute(PERMIT);
+            permit.kind.limiter.release();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT) instanceof Permit permit) {
+            request.removeAttribute(PERMIT);
+            if (permit.kind.sampled) {
+                permit.kind.limiter.release(System.nanoTime() - permit.started, permit.inFlightBefore);
+            } else {
+                permit.kind.limiter.release();
+            }
+        }
+    }
+
+    private Kind kindOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (BULK_PATHS.contains(path)) {
+            return bulk;
+        }
+        if (HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())) {
+            return USERS_PATH.equals(path) && "true".equals(request.getParameter("stream")) ? bulk : reads;
+        }
+        return writes;
+    }
+
+    private record Permit(Kind kind, long started, int inFlightBefore) {
+    }
+
+    private static final class Kind {
+        private final String name;
+        private final AimdLimiter limiter;
+        // whether requests of this kind adapt the limit to their latency
+        private final boolean sampled;
+        private final Counter admitted;
+        private final Counter rejected;
+
+        private Kind(String name, AimdLimiter limiter, boolean sampled, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.limiter = limiter;
+            this.sampled = sampled;
+            admitted = Counter.builder("users.admission.requests")
+                    .description("User API requests by admission outcome")
+                    .tags("kind", name, "outcome", "admitted")
+                    .register(meterRegistry);
+            rejected = Counter.builder("users.admission.requests")
+                    .description("User API requests by admission outcome")
+                    .tags("kind", name, "outcome", "rejected")
+                    .register(meterRegistry);
+            Gauge.builder("users.admission.limit", limiter, AimdLimiter::limit)
+                    .description("Current concurrency limit")
+                    .tag("kind", name)
+                    .register(meterRegistry);
+            Gauge.builder("users.admission.in-flight", limiter, AimdLimiter::inFlight)
+                    .description("Admitted requests in flight")
+                    .tag("kind", name)
+                    .register(meterRegistry);
+        }
+    }
+}
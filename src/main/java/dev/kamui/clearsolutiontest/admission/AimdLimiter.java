@@ -0,0 +1,108 @@
+package dev.kamui.clearsolutiontest.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit that follows measured latency with additive increase, multiplicative decrease.
+ * Every request that completes within {@code latencyTarget} while the limit is at least half in use
+ * raises the limit by {@code 1 / limit}, so about one per limit-sized round of requests. A slower request
+ * cuts the limit by {@link #BACKOFF}, at most once per {@code latencyTarget}: the requests of one slow
+ * round all report late and should count as a single congestion signal.
+ * <p>
+ * Releases adapt the limit with compare-and-set loops, so completing requests never wait on each other.
+ */
+public class AimdLimiter {
+
+    static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final LongSupplier clock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // the bits of the limit as a double
+    private final AtomicLong limit;
+    private final AtomicLong lastDecrease;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos) {
+        this(initialLimit, minLimit, maxLimit, latencyTargetNanos, System::nanoTime);
+    }
+
+    AimdLimiter(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos, LongSupplier clock) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must be 1 <= min <= max: " + minLimit + ", " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.clock = clock;
+        this.limit = new AtomicLong(Double.doubleToLongBits(Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+        this.lastDecrease = new AtomicLong(clock.getAsLong() - latencyTargetNanos);
+    }
+
+    /**
+     * @return the number of requests in flight before this one, or -1 when the limit is reached
+     */
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit()) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Releases a request that completed after {@code latencyNanos} with {@code inFlightBefore} other requests
+     * in flight when it was admitted, and adapts the limit to it.
+     */
+    public void release(long latencyNanos, int inFlightBefore) {
+        inFlight.decrementAndGet();
+        if (latencyNanos > latencyTargetNanos) {
+            long now = clock.getAsLong();
+            long last = lastDecrease.get();
+            // only the request that moves the time of the last decrease cuts the limit
+            if (now - last >= latencyTargetNanos && lastDecrease.compareAndSet(last, now)) {
+                while (true) {
+                    long bits = limit.get();
+                    double next = Math.max(minLimit, Double.longBitsToDouble(bits) * BACKOFF);
+                    if (limit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                        return;
+                    }
+                }
+            }
+            return;
+        }
+        while (true) {
+            long bits = limit.get();
+            double current = Double.longBitsToDouble(bits);
+            if (inFlightBefore + 1 < current / 2) {
+                return;
+            }
+            double next = Math.min(maxLimit, current + 1 / current);
+            if (next == current || limit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases a request without a latency sample, for one that is not done but no longer holds a thread.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int limit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
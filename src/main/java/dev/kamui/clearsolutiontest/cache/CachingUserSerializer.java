@@ -0,0 +1,51 @@
+package dev.kamui.clearsolutiontest.cache;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import dev.kamui.clearsolutiontest.model.User;
+
+import java.io.IOException;
+
+/**
+ * Writes users from the {@link UserJsonCache}, serializing them with the regular serializer on a miss.
+ * Only generators that write JSON text take cached forms. Binary formats such as Smile or CBOR can't embed raw JSON,
+ * and neither can a {@link com.fasterxml.jackson.databind.util.TokenBuffer}, which may be replayed into one of them later.
+ */
+class CachingUserSerializer extends StdSerializer<User> {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final JsonSerializer<Object> serializer;
+    private final UserJsonCache cache;
+
+    @SuppressWarnings("unchecked")
+    CachingUserSerializer(JsonSerializer<?> serializer, UserJsonCache cache) {
+        super(User.class);
+        this.serializer = (JsonSerializer<Object>) serializer;
+        this.cache = cache;
+    }
+
+    @Override
+    public void serialize(User user, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        if (user.getId() == null || !acceptsRawJson(generator)) {
+            serializer.serialize(user, generator, provider);
+            return;
+        }
+        generator.writeRawValue(cache.json(user, uncached -> {
+            ByteArrayBuilder out = new ByteArrayBuilder(256);
+            try (JsonGenerator userGenerator = JSON.createGenerator(out)) {
+                serializer.serialize(uncached, userGenerator, provider);
+            }
+            return out.toByteArray();
+        }));
+    }
+
+    private static boolean acceptsRawJson(JsonGenerator generator) {
+        return generator instanceof JsonGeneratorImpl;
+    }
+}
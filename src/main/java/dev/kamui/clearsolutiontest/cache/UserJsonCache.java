@@ -0,0 +1,190 @@
+package dev.kamui.clearsolutiontest.cache;
+
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStoreListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the serialized JSON of users by id, bounded by an approximate number of bytes, counting the JSON
+ * and the user it was made from, with least recently used users evicted first.
+ * A cached form is only used for a user with the same fields as the one it was made from,
+ * so a form cached from a user that was concurrently updated is never served.
+ * Entries of updated and deleted users are dropped as soon as the store reports the change.
+ */
+public class UserJsonCache implements UserStoreListener {
+
+    private static final int SEGMENTS = 16;
+    // rough size of an entry besides its JSON and user: the map node, the entry, the boxed id and the RawJson
+    private static final int ENTRY_OVERHEAD = 112;
+    // rough sizes of the objects a cached user keeps, with compressed references
+    private static final int USER_SIZE = 40;
+    private static final int ID_SIZE = 16;
+    private static final int BIRTH_DATE_SIZE = 24;
+    private static final int ADDRESS_SIZE = 32;
+    // a String and its array besides the characters, one byte each for Latin-1 text
+    private static final int STRING_SIZE = 40;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserJsonCache(long maxBytes, MeterRegistry meterRegistry) {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxBytes / SEGMENTS);
+        }
+        hits = Counter.builder("users.json.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("users.json.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("users.json.cache.size", this, UserJsonCache::bytes)
+                .description("Approximate bytes held by the serialized user cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the JSON of the user, serializing and caching it if there is no cached form
+     * made from a user with the same fields.
+     */
+    public RawJson json(User user, Serializer serializer) throws IOException {
+        Segment segment = segmentFor(user.getId());
+        Entry entry = segment.get(user.getId());
+        if (entry != null && sameFields(entry.user(), user)) {
+            hits.increment();
+            return entry.json();
+        }
+        misses.increment();
+        RawJson json = new RawJson(serializer.serialize(user));
+        segment.put(user.getId(), new Entry(user, json, ENTRY_OVERHEAD + json.length() + retainedSize(user)));
+        return json;
+    }
+
+    public void invalidate(long id) {
+        segmentFor(id).remove(id);
+    }
+
+    /**
+     * @return approximate bytes held by the cache
+     */
+    public long bytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void onUpdated(User previous, User updated, long version) {
+        invalidate(updated.getId());
+    }
+
+    @Override
+    public void onDeleted(User deleted, long version) {
+        invalidate(deleted.getId());
+    }
+
+    private Segment segmentFor(long id) {
+        return segments[Long.hashCode(id) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * @return rough bytes the cached user keeps reachable, as it is kept to compare fields and is often
+     * a copy decoded from the store rather than an object the store holds anyway
+     */
+    static long retainedSize(User user) {
+        long size = USER_SIZE + ID_SIZE + BIRTH_DATE_SIZE + size(user.getFirstName()) + size(user.getLastName())
+                + size(user.getEmail()) + size(user.getPhoneNumber());
+        Address address = user.getAddress();
+        if (address != null) {
+            size += ADDRESS_SIZE + size(address.country()) + size(address.city()) + size(address.state())
+                    + size(address.zip()) + size(address.street());
+        }
+        return size;
+    }
+
+    private static long size(String value) {
+        return value == null ? 0 : STRING_SIZE + value.length();
+    }
+
+    private static boolean sameFields(User cached, User user) {
+        return cached == user
+                || Objects.equals(cached.getId(), user.getId())
+                && Objects.equals(cached.getEmail(), user.getEmail())
+                && Objects.equals(cached.getFirstName(), user.getFirstName())
+                && Objects.equals(cached.getLastName(), user.getLastName())
+                && Objects.equals(cached.getBirthDate(), user.getBirthDate())
+                && Objects.equals(cached.getPhoneNumber(), user.getPhoneNumber())
+                && Objects.equals(cached.getAddress(), user.getAddress());
+    }
+
+    @FunctionalInterface
+    public interface Serializer {
+        byte[] serialize(User user) throws IOException;
+    }
+
+    private record Entry(User user, RawJson json, long size) {
+    }
+
+    private static final class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxBytes;
+        private volatile long bytes;
+
+        private Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        Entry get(long id) {
+            lock.lock();
+            try {
+                return entries.get(id);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(long id, Entry entry) {
+            if (entry.size() > maxBytes) {
+                return;
+            }
+            lock.lock();
+            try {
+                long size = bytes + entry.size();
+                Entry replaced = entries.put(id, entry);
+                if (replaced != null) {
+                    size -= replaced.size();
+                }
+                for (Iterator<Entry> it = entries.values().iterator(); size > maxBytes; ) {
+                    size -= it.next().size();
+                    it.remove();
+                }
+                bytes = size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(long id) {
+            lock.lock();
+            try {
+                Entry removed = entries.remove(id);
+                if (removed != null) {
+                    bytes -= removed.size();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package dev.kamui.clearsolutiontest.cache;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Serves the JSON of users from a {@link UserJsonCache} wherever the application writes a {@link User}.
+ * Enabled with {@code user.json-cache.enabled=true}, bounded by {@code user.json-cache.max-size}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "user.json-cache.enabled", havingValue = "true")
+public class UserJsonCacheConfig {
+
+    @Bean
+    public UserJsonCache userJsonCache(UserStore store, MeterRegistry meterRegistry,
+                                       @Value("${user.json-cache.max-size:64MB}") DataSize maxSize) {
+        UserJsonCache cache = new UserJsonCache(maxSize.toBytes(), meterRegistry);
+        store.addListener(cache);
+        return cache;
+    }
+
+    @Bean
+    public Module userJsonCacheModule(UserJsonCache cache) {
+        return module(cache);
+    }
+
+    /**
+     * @return a Jackson module that writes users through the cache
+     */
+    public static Module module(UserJsonCache cache) {
+        SimpleModule module = new SimpleModule("user-json-cache");
+        module.setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription description,
+                                                      JsonSerializer<?> serializer) {
+                return description.getBeanClass() == User.class
+                        ? new CachingUserSerializer(serializer, cache)
+                        : serializer;
+            }
+        });
+        return module;
+    }
+}
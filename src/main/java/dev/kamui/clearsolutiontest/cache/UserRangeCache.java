@@ -0,0 +1,196 @@
+package dev.kamui.clearsolutiontest.cache;
+
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.BirthDateKey;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.UserStoreListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caches the results of birth date range queries, bounded by the total number of cached users
+ * with least recently used results evicted first. An empty result counts as one user, so that
+ * ranges without users are bounded too.
+ * A write drops only the results whose range contains the old or new birth date of the user, looked up
+ * through an index of the ranges by their start, so it skips the ranges that start after that date.
+ * A query registers itself before reading the store and its result is only cached if no such write
+ * happened in the meantime, so a result that misses a concurrent write is never cached.
+ * Enabled with {@code user.range-cache.enabled=true}, bounded by {@code user.range-cache.max-users}.
+ */
+@Component
+public class UserRangeCache implements UserStoreListener {
+
+    private final UserStore store;
+    private final boolean enabled;
+    private final long maxUsers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // results in access order, a query being loaded is mapped to an entry without users
+    private final Map<Range, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // the ranges of entries by their start
+    private final NavigableMap<LocalDate, Set<Range>> rangesByFrom = new TreeMap<>();
+    private volatile long users;
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserRangeCache(UserStore store, MeterRegistry meterRegistry,
+                          @Value("${user.range-cache.enabled:false}") boolean enabled,
+                          @Value("${user.range-cache.max-users:100000}") long maxUsers) {
+        this.store = store;
+        this.enabled = enabled;
+        this.maxUsers = maxUsers;
+        hits = Counter.builder("users.range.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("users.range.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("users.range.cache.size", this, cache -> cache.users)
+                .description("Users held by cached range query results")
+                .register(meterRegistry);
+        if (enabled) {
+            store.addListener(this);
+        }
+    }
+
+    /**
+     * Same as {@link UserStore#findByBirthDateBetween(LocalDate, LocalDate, BirthDateKey, long)}.
+     */
+    public List<User> find(LocalDate from, LocalDate to, BirthDateKey after, long limit) {
+        if (!enabled) {
+            return store.findByBirthDateBetween(from, to, after, limit);
+        }
+        Range range = new Range(from, to, after, limit);
+        Entry loading = new Entry(null);
+        lock.lock();
+        try {
+            Entry entry = entries.get(range);
+            if (entry != null && entry.users() != null) {
+                hits.increment();
+                return entry.users();
+            }
+            if (entry == null) {
+                entries.put(range, loading);
+                rangesByFrom.computeIfAbsent(from, date -> new HashSet<>()).add(range);
+            } else {
+                // another query is loading the same range and will cache it
+                loading = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        List<User> result = store.findByBirthDateBetween(from, to, after, limit);
+        if (loading != null) {
+            cache(range, loading, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of users held by cached results, counting an empty result as one
+     */
+    public long size() {
+        return users;
+    }
+
+    @Override
+    public void onCreated(User user, long version) {
+        invalidate(user.getBirthDate());
+    }
+
+    @Override
+    public void onUpdated(User previous, User updated, long version) {
+        invalidate(previous.getBirthDate());
+        if (!previous.getBirthDate().equals(updated.getBirthDate())) {
+            invalidate(updated.getBirthDate());
+        }
+    }
+
+    @Override
+    public void onDeleted(User deleted, long version) {
+        invalidate(deleted.getBirthDate());
+    }
+
+    private void cache(Range range, Entry loading, List<User> result) {
+        lock.lock();
+        try {
+            if (entries.get(range) != loading) {
+                return;
+            }
+            Entry entry = new Entry(result);
+            if (entry.size() > maxUsers) {
+                entries.remove(range);
+                unindex(range);
+                return;
+            }
+            entries.put(range, entry);
+            long size = users + entry.size();
+            for (Iterator<Map.Entry<Range, Entry>> it = entries.entrySet().iterator(); size > maxUsers; ) {
+                Map.Entry<Range, Entry> eldest = it.next();
+                size -= eldest.getValue().size();
+                it.remove();
+                unindex(eldest.getKey());
+            }
+            users = size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void invalidate(LocalDate birthDate) {
+        lock.lock();
+        try {
+            long size = users;
+            for (Iterator<Set<Range>> starts = rangesByFrom.headMap(birthDate, false).values().iterator();
+                 starts.hasNext(); ) {
+                Set<Range> ranges = starts.next();
+                for (Iterator<Range> it = ranges.iterator(); it.hasNext(); ) {
+                    Range range = it.next();
+                    if (range.contains(birthDate)) {
+                        size -= entries.remove(range).size();
+                        it.remove();
+                    }
+                }
+                if (ranges.isEmpty()) {
+                    starts.remove();
+                }
+            }
+            users = size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unindex(Range range) {
+        Set<Range> ranges = rangesByFrom.get(range.from());
+        ranges.remove(range);
+        if (ranges.isEmpty()) {
+            rangesByFrom.remove(range.from());
+        }
+    }
+
+    private record Range(LocalDate from, LocalDate to, BirthDateKey after, long limit) {
+
+        boolean contains(LocalDate birthDate) {
+            return birthDate.isAfter(from) && birthDate.isBefore(to);
+        }
+    }
+
+    private record Entry(List<User> users) {
+
+        int size() {
+            return users == null ? 0 : Math.max(1, users.size());
+        }
+    }
+}
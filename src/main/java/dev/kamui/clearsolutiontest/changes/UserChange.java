@@ -0,0 +1,18 @@
+package dev.kamui.clearsolutiontest.changes;
+
+import dev.kamui.clearsolutiontest.model.User;
+
+/**
+ * A change of one user, numbered by {@link UserChangeLog} in publication order.
+ * {@code version} is the storage version that made it and {@code user} is {@code null} for deletions.
+ */
+public record UserChange(long sequence, Type type, long id, long version, User user) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED;
+
+        public String eventName() {
+            return name().toLowerCase();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package dev.kamui.clearsolutiontest.changes;
+
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.UserStoreListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the latest changes of the store in a bounded ring, numbered from 1 in the order writers claimed them.
+ * Writers never wait: a change claims its sequence with one atomic increment and overwrites the oldest slot.
+ * Readers follow with a {@link Cursor} at their own pace; one that falls a whole ring behind has lost changes
+ * and has to resync from the storage instead. The ring holds {@code user.changes.capacity} changes,
+ * rounded up to a power of two.
+ */
+@Component
+public class UserChangeLog implements UserStoreListener {
+
+    private final AtomicReferenceArray<UserChange> slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong(1);
+    private final Counter resyncs;
+
+    public UserChangeLog(UserStore store, MeterRegistry meterRegistry,
+                         @Value("${user.changes.capacity:65536}") int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        resyncs = Counter.builder("users.changes.resyncs")
+                .description("Change readers that fell a whole ring behind")
+                .register(meterRegistry);
+        Gauge.builder("users.changes.sequence", nextSequence, next -> next.get() - 1)
+                .description("Sequence of the latest published change")
+                .register(meterRegistry);
+        store.addListener(this);
+    }
+
+    /**
+     * @return the sequence of the latest change, a reader that resyncs from the storage can resume after it
+     */
+    public long latestSequence() {
+        return nextSequence.get() - 1;
+    }
+
+    /**
+     * @param lastSeen sequence of the last change the reader has, or {@code null} to only read new changes
+     */
+    public Cursor cursor(Long lastSeen) {
+        long next = nextSequence.get();
+        return new Cursor(lastSeen == null ? next : Math.min(Math.max(lastSeen + 1, 1), next));
+    }
+
+    @Override
+    public void onCreated(User user, long version) {
+        publish(UserChange.Type.CREATED, user.getId(), version, user);
+    }
+
+    @Override
+    public void onUpdated(User previous, User updated, long version) {
+        publish(UserChange.Type.UPDATED, updated.getId(), version, updated);
+    }
+
+    @Override
+    public void onDeleted(User deleted, long version) {
+        publish(UserChange.Type.DELETED, deleted.getId(), version, null);
+    }
+
+    private void publish(UserChange.Type type, long id, long version, User user) {
+        UserChange change = new UserChange(nextSequence.getAndIncrement(), type, id, version, user);
+        // a writer that was overtaken by a whole ring must not put its older change back
+        slots.accumulateAndGet((int) change.sequence() & mask, change,
+                (current, published) -> current == null || current.sequence() < published.sequence() ? published : current);
+    }
+
+    /**
+     * Reading position of one subscriber. Not thread-safe.
+     */
+    public final class Cursor {
+        private long next;
+        private boolean lost;
+
+        private Cursor(long next) {
+            this.next = next;
+        }
+
+        /**
+         * @return up to {@code max} changes after the last one read, in sequence order, empty when there
+         * are none yet or the cursor {@link #lost() lost} some
+         */
+        public List<UserChange> poll(int max) {
+            List<UserChange> changes = new ArrayList<>();
+            long published = nextSequence.get();
+            if (lost || published - next > slots.length()) {
+                return lose();
+            }
+            while (next < published && changes.size() < max) {
+                UserChange change = slots.get((int) next & mask);
+                if (change == null || change.sequence() < next) {
+                    // claimed, but its writer hasn't stored it yet
+                    break;
+                }
+                if (change.sequence() > next) {
+                    return lose();
+                }
+                changes.add(change);
+                next++;
+            }
+            return changes;
+        }
+
+        /**
+         * @return whether changes were overwritten before this cursor read them
+         */
+        public boolean lost() {
+            return lost;
+        }
+
+        /**
+         * @return the sequence of the last change read
+         */
+        public long lastSeen() {
+            return next - 1;
+        }
+
+        private List<UserChange> lose() {
+            if (!lost) {
+                lost = true;
+                resyncs.increment();
+            }
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package dev.kamui.clearsolutiontest.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import dev.kamui.clearsolutiontest.controller.UserRequestParser.BulkPatch;
+import dev.kamui.clearsolutiontest.exception.UserAlreadyExistException;
+import dev.kamui.clearsolutiontest.exception.UserNotFoundException;
+import dev.kamui.clearsolutiontest.exception.UserVersionConflictException;
+import dev.kamui.clearsolutiontest.storage.UpdateResult;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.UserUpdate;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Applies the parsed lines of a batch update to the store and turns the outcome of every line into its result:
+ * 200 with the new version, 400 for an invalid line or a taken email, 404 for an unknown id,
+ * 412 for a user changed since the version a line expects, and
+ * 424 Failed Dependency for the lines of an all-or-nothing batch that weren't applied because another line failed.
+ */
+final class UserBatchUpdates {
+
+    static final int UPDATED = HttpStatus.OK.value();
+    private static final int NOT_APPLIED = HttpStatus.FAILED_DEPENDENCY.value();
+
+    private UserBatchUpdates() {
+    }
+
+    static List<PatchResult> updateEach(UserStore store, List<BulkPatch> batch) {
+        List<UpdateResult> updated = store.updateEach(updates(batch));
+        List<PatchResult> results = new ArrayList<>(batch.size());
+        int next = 0;
+        for (BulkPatch patch : batch) {
+            results.add(patch.update() == null ? invalid(patch) : result(patch.line(), updated.get(next++), -1));
+        }
+        return results;
+    }
+
+    /**
+     * Applies nothing if any line is invalid, and otherwise all lines or none.
+     */
+    static List<PatchResult> updateAllOrNone(UserStore store, List<BulkPatch> patches) {
+        List<PatchResult> results = new ArrayList<>(patches.size());
+        BulkPatch firstInvalid = patches.stream().filter(patch -> patch.update() == null).findFirst().orElse(null);
+        if (firstInvalid != null) {
+            for (BulkPatch patch : patches) {
+                results.add(patch.update() == null ? invalid(patch) : notApplied(patch.line(), firstInvalid.line()));
+            }
+            return results;
+        }
+        List<UpdateResult> updated = store.updateAllOrNone(updates(patches));
+        int refusedLine = -1;
+        for (int i = 0; i < updated.size(); i++) {
+            if (updated.get(i).error() != null) {
+                refusedLine = patches.get(i).line();
+            }
+        }
+        for (int i = 0; i < patches.size(); i++) {
+            results.add(result(patches.get(i).line(), updated.get(i), refusedLine));
+        }
+        return results;
+    }
+
+    /**
+     * @return the status of a batch, that of its first failed line or 200
+     */
+    static int status(List<PatchResult> results) {
+        return results.stream()
+                .mapToInt(PatchResult::code)
+                .filter(code -> code != UPDATED && code != NOT_APPLIED)
+                .findFirst()
+                .orElse(UPDATED);
+    }
+
+    private static List<UserUpdate> updates(List<BulkPatch> patches) {
+        return patches.stream()
+                .map(BulkPatch::update)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static PatchResult result(int line, UpdateResult result, int refusedLine) {
+        if (result.updated() != null) {
+            return new PatchResult(line, UPDATED, result.updated().user().getId(), result.updated().version(), null);
+        }
+        if (result.error() == null) {
+            return notApplied(line, refusedLine);
+        }
+        if (result.error() instanceof UserNotFoundException) {
+            return new PatchResult(line, HttpStatus.NOT_FOUND.value(), null, null, "user not found");
+        }
+        if (result.error() instanceof UserAlreadyExistException) {
+            return new PatchResult(line, HttpStatus.BAD_REQUEST.value(), null, null, "user with this email is already registered");
+        }
+        if (result.error() instanceof UserVersionConflictException) {
+            return new PatchResult(line, HttpStatus.PRECONDITION_FAILED.value(), null, null, "user was modified by another request");
+        }
+        throw new IllegalStateException("Unexpected refusal of a batch update", result.error());
+    }
+
+    private static PatchResult invalid(BulkPatch patch) {
+        return new PatchResult(patch.line(), HttpStatus.BAD_REQUEST.value(), null, null, patch.error());
+    }
+
+    private static PatchResult notApplied(int line, int failedLine) {
+        return new PatchResult(line, NOT_APPLIED, null, null, "not applied, line " + failedLine + " failed");
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record PatchResult(int line, int code, Long id, Long version, String message) {
+    }
+}
@@ -0,0 +1,173 @@
+package dev.kamui.clearsolutiontest.controller;
+
+import dev.kamui.clearsolutiontest.changes.UserChange;
+import dev.kamui.clearsolutiontest.changes.UserChangeLog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the {@link UserChangeLog} to Server-Sent Events subscribers. A small pool of poller threads checks every
+ * subscriber periodically and hands its new changes to a sender thread, one send at a time per subscriber.
+ * Sends block on the client, so a poller never sends itself: a client that stops reading holds up its own
+ * sender and never a writer or another subscriber. A subscriber whose send makes no progress for
+ * {@code user.changes.send-timeout} is disconnected, and so is one that falls a whole ring behind, after
+ * a {@code resync} event with the sequence to resume from after reloading the users.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class UserChangeEmitters {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final UserChangeLog changeLog;
+    private final long pollIntervalNanos;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final ScheduledExecutorService pollers;
+    private final ExecutorService senders;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    public UserChangeEmitters(UserChangeLog changeLog, MeterRegistry meterRegistry,
+                              @Value("${user.changes.poll-interval:100ms}") Duration pollInterval,
+                              @Value("${user.changes.sender-threads:4}") int senderThreads,
+                              @Value("${user.changes.timeout:0}") Duration timeout,
+                              @Value("${user.changes.send-timeout:5s}") Duration sendTimeout) {
+        this.changeLog = changeLog;
+        this.pollIntervalNanos = pollInterval.toNanos();
+        // zero keeps a stream open for as long as the client stays, instead of the container's async timeout
+        this.timeoutMillis = timeout.toMillis();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.pollers = Executors.newScheduledThreadPool(senderThreads, daemon("user-changes"));
+        // a thread per subscriber that is sending, as a send lasts as long as its client takes to read it
+        this.senders = Executors.newCachedThreadPool(daemon("user-changes-sender"));
+        Gauge.builder("users.changes.subscribers", subscribers, Set::size)
+                .description("Open change streams")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param lastSeen sequence of the last change the subscriber has, or {@code null} for new changes only
+     */
+    public SseEmitter subscribe(Long lastSeen) {
+        return subscribe(lastSeen, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(Long lastSeen, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, changeLog.cursor(lastSeen));
+        subscribers.add(subscriber);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        subscriber.task = pollers.scheduleWithFixedDelay(subscriber::poll, 0, pollIntervalNanos, TimeUnit.NANOSECONDS);
+        return emitter;
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        pollers.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final UserChangeLog.Cursor cursor;
+        private volatile ScheduledFuture<?> task;
+        private volatile Future<?> sending;
+        // when the running send last got a change out
+        private volatile long progressed;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, UserChangeLog.Cursor cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+
+        private void poll() {
+            if (closed) {
+                return;
+            }
+            Future<?> running = sending;
+            if (running == null || running.isDone()) {
+                progressed = System.nanoTime();
+                sending = senders.submit(this::drain);
+            } else if (System.nanoTime() - progressed > sendTimeoutNanos) {
+                close();
+                running.cancel(true);
+                // the emitter is locked by the stalled send, so it is completed once that send gives up
+                senders.execute(() -> emitter.completeWithError(new IOException("Change stream client stopped reading")));
+            }
+        }
+
+        private void drain() {
+            try {
+                List<UserChange> changes;
+                do {
+                    changes = cursor.poll(BATCH_SIZE);
+                    for (UserChange change : changes) {
+                        emitter.send(SseEmitter.event()
+                                .id(Long.toString(change.sequence()))
+                                .name(change.type().eventName())
+                                .data(change, MediaType.APPLICATION_JSON));
+                        progressed = System.nanoTime();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                } while (changes.size() == BATCH_SIZE);
+                if (cursor.lost()) {
+                    long sequence = changeLog.latestSequence();
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(sequence))
+                            .name("resync")
+                            .data(Map.of("sequence", sequence), MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                    close();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client went away or the emitter already completed
+                close();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+            ScheduledFuture<?> scheduled = task;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+}
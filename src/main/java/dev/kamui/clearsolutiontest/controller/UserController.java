@@ -1,108 +1,346 @@
 package dev.kamui.clearsolutiontest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kamui.clearsolutiontest.cache.UserRangeCache;
+import dev.kamui.clearsolutiontest.controller.UserRequestParser.BulkPatch;
+import dev.kamui.clearsolutiontest.controller.UserRequestParser.BulkUser;
 import dev.kamui.clearsolutiontest.dto.*;
-import dev.kamui.clearsolutiontest.exception.InvalidAgeException;
 import dev.kamui.clearsolutiontest.exception.UserAlreadyExistException;
 import dev.kamui.clearsolutiontest.exception.UserNotFoundException;
-
+import dev.kamui.clearsolutiontest.format.PayloadFormats;
 import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.search.UserSearch;
+import dev.kamui.clearsolutiontest.search.UserSearchIndex;
+import dev.kamui.clearsolutiontest.stats.UserStatistics;
+import dev.kamui.clearsolutiontest.storage.BirthDateKey;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.VersionedUser;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Validated
 @RequestMapping("api/v1/users")
 public class UserController {
 
-    @Value("${min.age}")
-    private int minAge;
+    private static final int EXPORT_FLUSH_EVERY = 1000;
+
+    private final UserStore storage;
+
+    private final UserRangeCache rangeCache;
+
+    private final UserSearchIndex searchIndex;
+
+    private final UserStatistics statistics;
+
+    private final UserChangeEmitters changeEmitters;
+
+    private final UserResponseWriter responseWriter;
+
+    private final UserRequestParser requestParser;
 
-    private final Set<User> storage = new HashSet<>();
+    private final PayloadFormats payloadFormats;
+
+    private final int bulkBatchSize;
+
+    public UserController(UserStore storage, UserRangeCache rangeCache, UserSearchIndex searchIndex,
+                          UserStatistics statistics, UserChangeEmitters changeEmitters,
+                          UserResponseWriter responseWriter, UserRequestParser requestParser,
+                          PayloadFormats payloadFormats, @Value("${user.bulk.batch-size:1000}") int bulkBatchSize) {
+        this.storage = storage;
+        this.rangeCache = rangeCache;
+        this.searchIndex = searchIndex;
+        this.statistics = statistics;
+        this.changeEmitters = changeEmitters;
+        this.responseWriter = responseWriter;
+        this.requestParser = requestParser;
+        this.payloadFormats = payloadFormats;
+        this.bulkBatchSize = bulkBatchSize;
+    }
 
     @PostMapping
     public ResponseEntity<UserDataResponse> createUser(@Valid @RequestBody UserRequest request) {
-        if (!validAge(request.getBirthData())) {
-            throw new InvalidAgeException("Age is less than 18");
-        }
-        User user = UserRequest.convertToNewUser(request, storage.size() + 1);
-        if (userExist(user)) {
+        User user = requestParser.newUser(request);
+        if (!storage.createIfEmailAbsent(user)) {
             throw new UserAlreadyExistException("User with this email is already exist");
         }
-        storage.add(user);
 
         //that since there's no database layer and the User class serves as a simple data class,
         // it's appropriate to return it directly as a JSON response without the need for a separate DTO
         return ResponseEntity.status(HttpStatus.CREATED).body(new UserDataResponse(HttpStatus.CREATED.value(), user));
     }
 
+    /**
+     * Creates users from an NDJSON body, one {@link UserRequest} per line.
+     * Lines are read in batches: each batch is parsed and validated in parallel and then stored,
+     * and the result of every line is written out before the next batch is read.
+     */
+    @PostMapping(path = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void createUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (UserResponseWriter.BulkResults results = responseWriter.bulkResults(HttpStatus.OK.value(), response.getOutputStream())) {
+            readBatches(request, batch -> createUsers(batch, results));
+        }
+    }
+
+    /**
+     * Applies an NDJSON body of partial updates, one {@link UserPatch} per line, with the same
+     * null-means-unchanged semantics as {@link #updateUser}. Lines are read in batches like those of
+     * {@link #createUsers}, and each line is applied on its own. With {@code atomic=true} the whole body is read
+     * first and applied all or nothing, answered with the status of the first line that failed. Exports see
+     * either all of its updates or none, reads of single users may see them land one after the other.
+     */
+    @PatchMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void updateUsers(@RequestParam(name = "atomic", defaultValue = "false") boolean atomic,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (atomic) {
+            List<BulkPatch> patches = new ArrayList<>();
+            readBatches(request, batch -> patches.addAll(parsePatches(batch)));
+            List<UserBatchUpdates.PatchResult> results = UserBatchUpdates.updateAllOrNone(storage, patches);
+            int status = UserBatchUpdates.status(results);
+            response.setStatus(status);
+            try (UserResponseWriter.PatchResults out = responseWriter.patchResults(status, response.getOutputStream())) {
+                out.write(results);
+            }
+            return;
+        }
+        try (UserResponseWriter.PatchResults out = responseWriter.patchResults(HttpStatus.OK.value(), response.getOutputStream())) {
+            readBatches(request, batch -> out.write(UserBatchUpdates.updateEach(storage, parsePatches(batch))));
+        }
+    }
+
+    /**
+     * Answers {@code If-None-Match} with 304 Not Modified, without reading any user,
+     * when nothing has been written since the response with that {@code ETag}.
+     */
     @GetMapping
     public ResponseEntity<UserDataListResponse> getUsers(
             @RequestParam(name = "From") LocalDate from,
-            @RequestParam(name = "To") LocalDate to) {
+            @RequestParam(name = "To") LocalDate to,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            WebRequest webRequest) {
+
+        if (from.isAfter(to) || (limit != null && limit < 1)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (webRequest.checkNotModified(eTag())) {
+            return null;
+        }
+
+        BirthDateKey after = cursor != null ? UserCursor.decode(cursor) : null;
+        if (limit == null) {
+            List<User> userDataList = rangeCache.find(from, to, after, Long.MAX_VALUE);
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT)
+                    .body(new UserDataListResponse(HttpStatus.OK.value(), userDataList));
+        }
+
+        // one extra user tells whether there is a next page
+        List<User> userDataList = rangeCache.find(from, to, after, limit + 1L);
+        String nextCursor = null;
+        if (userDataList.size() > limit) {
+            userDataList = userDataList.subList(0, limit);
+            nextCursor = UserCursor.encode(userDataList.get(limit - 1));
+        }
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT)
+                .body(new UserDataListResponse(HttpStatus.OK.value(), userDataList, nextCursor));
+    }
+
+    /**
+     * Streams the whole range without collecting it into a list first, as JSON unless Smile or CBOR is accepted.
+     */
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamUsers(
+            @RequestParam(name = "From") LocalDate from,
+            @RequestParam(name = "To") LocalDate to,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest webRequest) {
 
         if (from.isAfter(to)) {
             return ResponseEntity.badRequest().build();
         }
+        if (webRequest.checkNotModified(eTag())) {
+            return null;
+        }
 
-        List<User> userDataList = storage.stream()
-                .filter(user -> user.getBirthDate().isAfter(from) && user.getBirthDate().isBefore(to))
-                .toList();
-        return ResponseEntity.ok(new UserDataListResponse(HttpStatus.OK.value(), userDataList));
+        BirthDateKey after = cursor != null ? UserCursor.decode(cursor) : null;
+        MediaType format = payloadFormats.negotiate(accept);
+        ObjectMapper mapper = payloadFormats.mapper(format);
+        StreamingResponseBody body = out -> responseWriter.writeList(HttpStatus.OK.value(),
+                storage.findByBirthDateBetween(from, to, after), out, mapper);
+        return ResponseEntity.ok().contentType(format).varyBy(HttpHeaders.ACCEPT).body(body);
+    }
+
+    /**
+     * Filters users by address fields, name prefixes and an optional birth date range
+     * by intersecting the bitmaps of {@link UserSearchIndex} instead of scanning the storage.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<UserDataListResponse> searchUsers(
+            @RequestParam(name = "country", required = false) String country,
+            @RequestParam(name = "city", required = false) String city,
+            @RequestParam(name = "state", required = false) String state,
+            @RequestParam(name = "zip", required = false) String zip,
+            @RequestParam(name = "first_name", required = false) String firstName,
+            @RequestParam(name = "last_name", required = false) String lastName,
+            @RequestParam(name = "From", required = false) LocalDate from,
+            @RequestParam(name = "To", required = false) LocalDate to,
+            @RequestParam(name = "limit", defaultValue = "100") int limit) {
+
+        UserSearch search = new UserSearch(country, city, state, zip, firstName, lastName, from, to);
+        if (!search.isValid() || limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new UserDataListResponse(HttpStatus.OK.value(), searchIndex.search(search, limit)));
+    }
+
+    /**
+     * Counts users per age band, birth year and country from counters kept up to date by every write,
+     * see {@link UserStatistics}.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<UserStatsResponse> getStats() {
+        return ResponseEntity.ok(new UserStatsResponse(HttpStatus.OK.value(), statistics.stats()));
+    }
+
+    /**
+     * Streams the changes of users as Server-Sent Events, after {@code Last-Event-ID} or {@code since}
+     * when given and from now on otherwise.
+     */
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId,
+                                    @RequestParam(name = "since", required = false) Long since) {
+        return changeEmitters.subscribe(lastEventId != null ? lastEventId : since);
+    }
+
+    /**
+     * Streams every user as NDJSON from a point-in-time snapshot of the storage.
+     * Concurrent writes are not blocked and don't show up in the export.
+     */
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = out -> {
+            try (UserStore.Snapshot snapshot = storage.openSnapshot()) {
+                responseWriter.writeNdjson(snapshot.stream(), out, EXPORT_FLUSH_EVERY);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<UserDataResponse> getUser(@PathVariable(name = "id") long id) {
+        VersionedUser user = storage.findVersionedById(id)
+                .orElseThrow(() -> new UserNotFoundException("User with id not found"));
+        return ResponseEntity.ok()
+                .eTag(UserETags.of(user.version()))
+                .body(new UserDataResponse(200, user.user()));
     }
 
+    /**
+     * With {@code If-Match}, only updates the user if it is still at the version of that {@code ETag},
+     * and answers 412 Precondition Failed otherwise.
+     */
     @PutMapping("/{id}")
     public ResponseEntity<UserDataResponse> updateUser(@PathVariable(name = "id") long id,
+                                                       @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                                        @Valid @RequestBody UserUpdateRequest request) {
-        User user = findById(id);
-        updateUser(request, user);
-        return ResponseEntity.ok(new UserDataResponse(200, user));
+        VersionedUser user = storage.update(id, UserETags.expectedVersion(ifMatch), request::applyTo)
+                .orElseThrow(() -> new UserNotFoundException("User with id not found"));
+        return ResponseEntity.ok()
+                .eTag(UserETags.of(user.version()))
+                .body(new UserDataResponse(200, user.user()));
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable(name = "id") long id) {
-        storage.remove(findById(id));
+        storage.delete(id).orElseThrow(() -> new UserNotFoundException("User with id not found"));
         return ResponseEntity.noContent().build();
     }
 
-    private boolean validAge(LocalDate userBirthData) {
-        return (int) ChronoUnit.YEARS.between(userBirthData, LocalDate.now()) >= minAge;
+    /**
+     * Hands the non-blank lines of an NDJSON body to {@code handler} in batches of {@code user.bulk.batch-size}.
+     */
+    private void readBatches(HttpServletRequest request, BatchHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        List<BulkLine> batch = new ArrayList<>(bulkBatchSize);
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            batch.add(new BulkLine(lineNumber, line));
+            if (batch.size() == bulkBatchSize) {
+                handler.handle(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            handler.handle(batch);
+        }
     }
 
-    private boolean userExist(User user) {
-        return storage.contains(user);
+    private List<BulkPatch> parsePatches(List<BulkLine> batch) {
+        return batch.parallelStream()
+                .map(line -> requestParser.parsePatch(line.number(), line.text()))
+                .toList();
     }
 
-    private User findById(long id) {
-        Optional<User> user = storage.stream().filter(u -> u.getId() == id).findFirst();
-        return user.orElseThrow(() -> new UserNotFoundException("User with id not found"));
+    private void createUsers(List<BulkLine> batch, UserResponseWriter.BulkResults results) throws IOException {
+        List<BulkUser> parsed = batch.parallelStream()
+                .map(line -> requestParser.parse(line.number(), line.text()))
+                .toList();
+        boolean[] created = storage.createAllIfEmailAbsent(parsed.stream()
+                .map(BulkUser::user)
+                .filter(Objects::nonNull)
+                .toList());
+        int next = 0;
+        for (BulkUser bulkUser : parsed) {
+            if (bulkUser.user() == null) {
+                results.failed(bulkUser.line(), bulkUser.error());
+            } else if (created[next++]) {
+                results.created(bulkUser.line(), bulkUser.user().getId());
+            } else {
+                results.failed(bulkUser.line(), "user with this email is already registered");
+            }
+        }
     }
 
-    private void updateUser(UserUpdateRequest updateRequest, User user) {
-        if (updateRequest.getFirstName() != null) {
-            user.setFirstName(updateRequest.getFirstName());
-        }
-        if (updateRequest.getLastName() != null) {
-            user.setLastName(updateRequest.getLastName());
-        }
-        if (updateRequest.getEmail() != null) {
-            user.setEmail(updateRequest.getEmail());
-        }
-        if (updateRequest.getBirthData() != null) {
-            user.setBirthDate(updateRequest.getBirthData());
-        }
-        if (updateRequest.getPhoneNumber() != null) {
-            user.setPhoneNumber(updateRequest.getPhoneNumber());
-        }
-        if (updateRequest.getAddress() != null) {
-            user.setAddress(updateRequest.getAddress());
-        }
+    /**
+     * Shared by every query, since a range can only change when something is written.
+     * Taken before the users are read, so it is never newer than the response.
+     */
+    private String eTag() {
+        return UserETags.of(storage.modificationVersion());
+    }
+
+    private record BulkLine(int number, String text) {
+    }
+
+    private interface BatchHandler {
+        void handle(List<BulkLine> batch) throws IOException;
     }
 }
@@ -0,0 +1,36 @@
+package dev.kamui.clearsolutiontest.controller;
+
+import dev.kamui.clearsolutiontest.exception.UserVersionConflictException;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+
+/**
+ * Maps user and storage versions to entity tags and {@code If-Match} headers back to user versions.
+ */
+final class UserETags {
+
+    private UserETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @return the user version an {@code If-Match} header asks for, or {@link UserStore#ANY_VERSION}
+     * when it is absent or {@code *}
+     * @throws UserVersionConflictException if the header can't match any version, e.g. a weak tag
+     */
+    static long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.equals("*")) {
+            return UserStore.ANY_VERSION;
+        }
+        if (ifMatch.length() > 2 && ifMatch.startsWith("\"") && ifMatch.endsWith("\"")) {
+            try {
+                return Long.parseLong(ifMatch, 1, ifMatch.length() - 1, 10);
+            } catch (NumberFormatException ignored) {
+                // not one of our tags
+            }
+        }
+        throw new UserVersionConflictException("If-Match doesn't name a user version: " + ifMatch);
+    }
+}
@@ -0,0 +1,100 @@
+package dev.kamui.clearsolutiontest.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dev.kamui.clearsolutiontest.dto.UserPatch;
+import dev.kamui.clearsolutiontest.dto.UserRequest;
+import dev.kamui.clearsolutiontest.exception.InvalidAgeException;
+import dev.kamui.clearsolutiontest.id.IdGenerator;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserUpdate;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+
+/**
+ * Turns user creation requests into new users once they pass the age check, one NDJSON line of a bulk create
+ * into a new user and one line of a batch update into a store update, or the reason it can't be applied.
+ */
+@Component
+public class UserRequestParser {
+
+    private final int minAge;
+    private final IdGenerator idGenerator;
+    private final Validator validator;
+    private final ObjectReader userRequestReader;
+    private final ObjectReader userPatchReader;
+
+    public UserRequestParser(@Value("${min.age}") int minAge, IdGenerator idGenerator, Validator validator,
+                             ObjectMapper objectMapper) {
+        this.minAge = minAge;
+        this.idGenerator = idGenerator;
+        this.validator = validator;
+        this.userRequestReader = objectMapper.readerFor(UserRequest.class);
+        this.userPatchReader = objectMapper.readerFor(UserPatch.class);
+    }
+
+    /**
+     * @return the user of a request that passed bean validation, with a new id
+     * @throws InvalidAgeException if the user is younger than {@code min.age}
+     */
+    User newUser(UserRequest request) {
+        if (!validAge(request.getBirthData())) {
+            throw new InvalidAgeException("Age is less than 18");
+        }
+        return UserRequest.convertToNewUser(request, idGenerator.nextId());
+    }
+
+    BulkUser parse(int line, String text) {
+        UserRequest request;
+        try {
+            request = userRequestReader.readValue(text);
+        } catch (JsonProcessingException e) {
+            return new BulkUser(line, null, "malformed json");
+        }
+        if (request == null) {
+            return new BulkUser(line, null, "malformed json");
+        }
+        Set<ConstraintViolation<UserRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return new BulkUser(line, null, violations.iterator().next().getMessage());
+        }
+        if (!validAge(request.getBirthData())) {
+            return new BulkUser(line, null, "age is less than 18");
+        }
+        return new BulkUser(line, UserRequest.convertToNewUser(request, idGenerator.nextId()), null);
+    }
+
+    BulkPatch parsePatch(int line, String text) {
+        UserPatch patch;
+        try {
+            patch = userPatchReader.readValue(text);
+        } catch (JsonProcessingException e) {
+            return new BulkPatch(line, null, "malformed json");
+        }
+        if (patch == null) {
+            return new BulkPatch(line, null, "malformed json");
+        }
+        Set<ConstraintViolation<UserPatch>> violations = validator.validate(patch);
+        if (!violations.isEmpty()) {
+            return new BulkPatch(line, null, violations.iterator().next().getMessage());
+        }
+        return new BulkPatch(line, new UserUpdate(patch.getId(), patch::applyTo), null);
+    }
+
+    private boolean validAge(LocalDate userBirthData) {
+        return (int) ChronoUnit.YEARS.between(userBirthData, LocalDate.now()) >= minAge;
+    }
+
+    record BulkUser(int line, User user, String error) {
+    }
+
+    record BulkPatch(int line, UserUpdate update, String error) {
+    }
+}
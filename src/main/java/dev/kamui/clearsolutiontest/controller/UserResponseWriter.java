@@ -0,0 +1,185 @@
+package dev.kamui.clearsolutiontest.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.kamui.clearsolutiontest.controller.UserBatchUpdates.PatchResult;
+import dev.kamui.clearsolutiontest.model.User;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes users straight to the response body one at a time, so the size of a response
+ * does not depend on how many users are kept in memory for it.
+ */
+@Component
+public class UserResponseWriter {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter userWriter;
+    private final ObjectWriter patchResultWriter;
+
+    public UserResponseWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.userWriter = objectMapper.writerFor(User.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.patchResultWriter = objectMapper.writerFor(PatchResult.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes {@code {"code": ..., "data": [...]}} with the same shape as {@code UserDataListResponse}.
+     */
+    public void writeList(int code, Stream<User> users, OutputStream out) throws IOException {
+        writeList(code, users, out, objectMapper, userWriter);
+    }
+
+    /**
+     * Writes the list like {@link #writeList(int, Stream, OutputStream)} in the format of the given mapper,
+     * such as Smile or CBOR.
+     */
+    public void writeList(int code, Stream<User> users, OutputStream out, ObjectMapper format) throws IOException {
+        if (format == objectMapper) {
+            writeList(code, users, out);
+            return;
+        }
+        writeList(code, users, out, format, format.writerFor(User.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE));
+    }
+
+    private static void writeList(int code, Stream<User> users, OutputStream out, ObjectMapper format,
+                                  ObjectWriter userWriter) throws IOException {
+        try (JsonGenerator generator = format.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartObject();
+            generator.writeNumberField("code", code);
+            generator.writeArrayFieldStart("data");
+            for (Iterator<User> it = users.iterator(); it.hasNext(); ) {
+                userWriter.writeValue(generator, it.next());
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes one JSON user per line. The output is flushed every {@code flushEvery} users,
+     * so a slow client slows down the producer instead of letting output pile up in memory.
+     */
+    public void writeNdjson(Stream<User> users, OutputStream out, int flushEvery) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            int written = 0;
+            for (Iterator<User> it = users.iterator(); it.hasNext(); ) {
+                userWriter.writeValue(generator, it.next());
+                generator.writeRaw('\n');
+                if (++written % flushEvery == 0) {
+                    generator.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a bulk import summary: per-line results are written as they are reported,
+     * and the totals are appended when the summary is closed.
+     */
+    public BulkResults bulkResults(int code, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeNumberField("code", code);
+        generator.writeArrayFieldStart("results");
+        return new BulkResults(generator);
+    }
+
+    /**
+     * Starts a batch update summary like {@link #bulkResults}, with the totals of updated and failed lines.
+     */
+    PatchResults patchResults(int code, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeNumberField("code", code);
+        generator.writeArrayFieldStart("results");
+        return new PatchResults(generator, patchResultWriter);
+    }
+
+    static final class PatchResults implements Closeable {
+
+        private final JsonGenerator generator;
+        private final ObjectWriter resultWriter;
+        private long updated;
+        private long failed;
+
+        private PatchResults(JsonGenerator generator, ObjectWriter resultWriter) {
+            this.generator = generator;
+            this.resultWriter = resultWriter;
+        }
+
+        void write(List<PatchResult> results) throws IOException {
+            for (PatchResult result : results) {
+                if (result.code() == UserBatchUpdates.UPDATED) {
+                    updated++;
+                } else {
+                    failed++;
+                }
+                resultWriter.writeValue(generator, result);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeEndArray();
+            generator.writeNumberField("updated", updated);
+            generator.writeNumberField("failed", failed);
+            generator.writeEndObject();
+            generator.close();
+        }
+    }
+
+    public static final class BulkResults implements Closeable {
+
+        private final JsonGenerator generator;
+        private long created;
+        private long failed;
+
+        private BulkResults(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        public void created(int line, long id) throws IOException {
+            created++;
+            generator.writeStartObject();
+            generator.writeNumberField("line", line);
+            generator.writeNumberField("code", 201);
+            generator.writeNumberField("id", id);
+            generator.writeEndObject();
+        }
+
+        public void failed(int line, String message) throws IOException {
+            failed++;
+            generator.writeStartObject();
+            generator.writeNumberField("line", line);
+            generator.writeNumberField("code", 400);
+            generator.writeStringField("message", message);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeEndArray();
+            generator.writeNumberField("created", created);
+            generator.writeNumberField("failed", failed);
+            generator.writeEndObject();
+            generator.close();
+        }
+    }
+}
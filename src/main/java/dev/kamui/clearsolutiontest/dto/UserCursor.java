@@ -0,0 +1,35 @@
+package dev.kamui.clearsolutiontest.dto;
+
+import dev.kamui.clearsolutiontest.exception.InvalidCursorException;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.BirthDateKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque page cursor for birth date range queries: points at the last returned user
+ * by its birth date and id.
+ */
+public final class UserCursor {
+
+    private UserCursor() {
+    }
+
+    public static String encode(User user) {
+        BirthDateKey key = BirthDateKey.of(user);
+        String raw = key.epochDay() + ":" + key.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static BirthDateKey decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf(':');
+            return new BirthDateKey(Long.parseLong(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Cursor " + cursor + " is malformed");
+        }
+    }
+}
@@ -1,8 +1,17 @@
 package dev.kamui.clearsolutiontest.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import dev.kamui.clearsolutiontest.model.User;
 
 import java.util.List;
 
-public record UserDataListResponse(int code, List<User> data) {
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record UserDataListResponse(int code, List<User> data,
+                                   @JsonInclude(JsonInclude.Include.NON_NULL) String nextCursor) {
+
+    public UserDataListResponse(int code, List<User> data) {
+        this(code, data, null);
+    }
 }
@@ -0,0 +1,20 @@
+package dev.kamui.clearsolutiontest.dto;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One line of a batch update: the id of the user and the fields to change, as in {@link UserUpdateRequest}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class UserPatch extends UserUpdateRequest {
+    @NotNull(message = "id must not be null")
+    private Long id;
+}
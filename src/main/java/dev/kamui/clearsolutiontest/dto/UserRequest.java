@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import dev.kamui.clearsolutiontest.model.Address;
 import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.validation.EmailAddress;
+import dev.kamui.clearsolutiontest.validation.PhoneNumber;
 import jakarta.validation.constraints.*;
 import lombok.*;
 
@@ -21,7 +23,7 @@ public class UserRequest {
     private String lastName;
 
     @NotNull(message = "e-mail address must not be empty")
-    @Pattern(regexp = "[\\w-.]+@([\\w-]+\\.)+[\\w-]{2,4}", message = "must be a valid e-mail address")
+    @EmailAddress
     private String email;
 
     @NotNull(message = "birth_data must not be empty")
@@ -30,18 +32,18 @@ public class UserRequest {
 
     private Address address;
 
-    @Pattern(regexp = "^[+]?[(]?[0-9]{3}[)]?[-\\s.]?[0-9]{3}[-\\s.]?[0-9]{4,6}$", message = "must be a valid phone_number")
+    @PhoneNumber
     private String phoneNumber;
 
     public static User convertToNewUser(UserRequest userRequest, long id) {
-        User user = new User();
-        user.setId(id);
-        user.setFirstName(userRequest.getFirstName());
-        user.setLastName(userRequest.getLastName());
-        user.setEmail(userRequest.getEmail());
-        user.setBirthDate(userRequest.getBirthData());
-        user.setAddress(userRequest.getAddress());
-        user.setPhoneNumber(userRequest.getPhoneNumber());
-        return user;
+        return User.builder()
+                .id(id)
+                .firstName(userRequest.getFirstName())
+                .lastName(userRequest.getLastName())
+                .email(userRequest.getEmail())
+                .birthDate(userRequest.getBirthData())
+                .address(userRequest.getAddress())
+                .phoneNumber(userRequest.getPhoneNumber())
+                .build();
     }
 }
\ No newline at end of file
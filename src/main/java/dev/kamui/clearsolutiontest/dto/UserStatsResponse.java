@@ -0,0 +1,6 @@
+package dev.kamui.clearsolutiontest.dto;
+
+import dev.kamui.clearsolutiontest.stats.UserStats;
+
+public record UserStatsResponse(int code, UserStats data) {
+}
@@ -3,8 +3,10 @@ package dev.kamui.clearsolutiontest.dto;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.validation.EmailAddress;
+import dev.kamui.clearsolutiontest.validation.PhoneNumber;
 import jakarta.validation.constraints.Past;
-import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -23,7 +25,7 @@ public class UserUpdateRequest {
     @Size(min = 2, max = 20)
     private String lastName;
 
-    @Pattern(regexp = "[\\w-.]+@([\\w-]+\\.)+[\\w-]{2,4}", message = "must be a valid e-mail address")
+    @EmailAddress
     private String email;
 
     @Past(message = "birth_data must be earlier than current date")
@@ -31,7 +33,32 @@ public class UserUpdateRequest {
 
     private Address address;
 
-    @Pattern(regexp = "^[+]?[(]?[0-9]{3}[)]?[-\\s.]?[0-9]{3}[-\\s.]?[0-9]{4,6}$", message = "")
+    @PhoneNumber
     private String phoneNumber;
 
+    /**
+     * @return a copy of {@code current} with the fields set in this request replaced
+     */
+    public User applyTo(User current) {
+        User.UserBuilder user = current.toBuilder();
+        if (firstName != null) {
+            user.firstName(firstName);
+        }
+        if (lastName != null) {
+            user.lastName(lastName);
+        }
+        if (email != null) {
+            user.email(email);
+        }
+        if (birthData != null) {
+            user.birthDate(birthData);
+        }
+        if (phoneNumber != null) {
+            user.phoneNumber(phoneNumber);
+        }
+        if (address != null) {
+            user.address(address);
+        }
+        return user.build();
+    }
 }
@@ -0,0 +1,11 @@
+package dev.kamui.clearsolutiontest.exception;
+
+/**
+ * Base of the exceptions that turn into 4xx/5xx answers. They are expected, can be thrown at the rate
+ * clients send bad requests and are never logged with a stack trace, so they don't capture one.
+ */
+public abstract class DomainException extends RuntimeException {
+    protected DomainException(String msg) {
+        super(msg, null, false, false);
+    }
+}
@@ -1,6 +1,6 @@
 package dev.kamui.clearsolutiontest.exception;
 
-public class InvalidAgeException extends RuntimeException{
+public class InvalidAgeException extends DomainException{
     public InvalidAgeException(String msg){
         super(msg);
     }
@@ -0,0 +1,7 @@
+package dev.kamui.clearsolutiontest.exception;
+
+public class InvalidCursorException extends DomainException{
+    public InvalidCursorException(String msg){
+        super(msg);
+    }
+}
@@ -0,0 +1,16 @@
+package dev.kamui.clearsolutiontest.exception;
+
+import java.time.Duration;
+
+public class ServiceOverloadedException extends DomainException {
+    private final Duration retryAfter;
+
+    public ServiceOverloadedException(String msg, Duration retryAfter) {
+        super(msg);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -1,6 +1,6 @@
 package dev.kamui.clearsolutiontest.exception;
 
-public class UserAlreadyExistException extends RuntimeException{
+public class UserAlreadyExistException extends DomainException{
     public UserAlreadyExistException(String msg){
         super(msg);
     }
@@ -1,6 +1,6 @@
 package dev.kamui.clearsolutiontest.exception;
 
-public class UserNotFoundException extends RuntimeException{
+public class UserNotFoundException extends DomainException{
     public UserNotFoundException(String msg) {
         super(msg);
     }
@@ -0,0 +1,7 @@
+package dev.kamui.clearsolutiontest.exception;
+
+public class UserVersionConflictException extends DomainException {
+    public UserVersionConflictException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,26 @@
+package dev.kamui.clearsolutiontest.format;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Lets the user API read and write Smile and CBOR next to JSON. The converters take the place of
+ * Spring's default ones, after the JSON converter, so JSON stays the answer to {@code Accept: *}{@code /*}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class PayloadFormatConfig {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(PayloadFormats formats) {
+        return new MappingJackson2SmileHttpMessageConverter(formats.smile());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(PayloadFormats formats) {
+        return new MappingJackson2CborHttpMessageConverter(formats.cbor());
+    }
+}
@@ -0,0 +1,104 @@
+package dev.kamui.clearsolutiontest.format;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+
+/**
+ * The encodings of user payloads: JSON by default, Smile or CBOR when a client asks for them.
+ * All of them come from the same Jackson configuration, so they carry the same snake_case fields.
+ */
+@Component
+public class PayloadFormats {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+
+    private final ObjectMapper json;
+    private final ObjectMapper smile;
+    private final ObjectMapper cbor;
+
+    public PayloadFormats(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder builder) {
+        this.json = objectMapper;
+        this.smile = builder.factory(new SmileFactory()).build();
+        this.cbor = builder.factory(new CBORFactory()).build();
+    }
+
+    public ObjectMapper smile() {
+        return smile;
+    }
+
+    public ObjectMapper cbor() {
+        return cbor;
+    }
+
+    /**
+     * @return the mapper that reads and writes the given content type, JSON for anything but Smile or CBOR
+     */
+    public ObjectMapper mapper(MediaType contentType) {
+        if (contentType == null) {
+            return json;
+        }
+        if (APPLICATION_SMILE.equalsTypeAndSubtype(contentType)) {
+            return smile;
+        }
+        if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(contentType)) {
+            return cbor;
+        }
+        return json;
+    }
+
+    /**
+     * @return the mapper for a raw {@code Content-Type} header
+     */
+    public ObjectMapper mapper(String contentType) {
+        return mapper(contentType != null ? parse(contentType) : null);
+    }
+
+    /**
+     * Picks the format of a response from an {@code Accept} header: the most preferred of JSON, Smile
+     * and CBOR, where wildcards and a missing or malformed header mean JSON.
+     */
+    public MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType mediaType : accepted) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            if (mediaType.equalsTypeAndSubtype(APPLICATION_SMILE)) {
+                return APPLICATION_SMILE;
+            }
+            if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)) {
+                return MediaType.APPLICATION_CBOR;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private static MediaType parse(String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package dev.kamui.clearsolutiontest.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process id generator that hands out blocks of consecutive ids to each thread.
+ * Threads touch the shared counter once per block instead of once per id,
+ * so they don't contend on it under concurrent creates. Ids start at 1.
+ * Ids left in the block of a finished thread are never used.
+ */
+public class BlockIdGenerator implements IdGenerator {
+
+    private final AtomicLong nextBlockStart = new AtomicLong(1);
+    private final int blockSize;
+    private final ThreadLocal<Block> block = ThreadLocal.withInitial(Block::new);
+
+    public BlockIdGenerator(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long nextId() {
+        Block current = block.get();
+        if (current.next == current.end) {
+            current.next = nextBlockStart.getAndAdd(blockSize);
+            current.end = current.next + blockSize;
+        }
+        return current.next++;
+    }
+
+    /**
+     * Moves the shared counter only, so it must be called before any thread has taken a block.
+     */
+    @Override
+    public void advancePast(long id) {
+        nextBlockStart.accumulateAndGet(id + 1, Math::max);
+    }
+
+    private static final class Block {
+        private long next;
+        private long end;
+    }
+}
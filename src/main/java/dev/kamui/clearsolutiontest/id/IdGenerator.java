@@ -0,0 +1,16 @@
+package dev.kamui.clearsolutiontest.id;
+
+/**
+ * Source of unique user ids. Implementations must be safe to call from many threads at once
+ * and must never hand out the same id twice.
+ */
+public interface IdGenerator {
+
+    long nextId();
+
+    /**
+     * Makes sure no later {@link #nextId()} returns {@code id} or anything issued before it,
+     * for ids that were handed out before a restart.
+     */
+    void advancePast(long id);
+}
@@ -0,0 +1,29 @@
+package dev.kamui.clearsolutiontest.id;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Chooses the user id generator with {@code user.id.generator}:
+ * {@code block} (default) for a single instance, {@code snowflake} for several instances
+ * that each get their own {@code user.id.node-id}.
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "user.id.generator", havingValue = "block", matchIfMissing = true)
+    public IdGenerator blockIdGenerator(@Value("${user.id.block-size:64}") int blockSize,
+                                        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        // every request gets a new virtual thread, which would use a single id of its block
+        return new BlockIdGenerator(virtualThreads ? 1 : blockSize);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user.id.generator", havingValue = "snowflake")
+    public IdGenerator snowflakeIdGenerator(@Value("${user.id.node-id}") long nodeId) {
+        return new SnowflakeIdGenerator(nodeId);
+    }
+}
@@ -0,0 +1,82 @@
+package dev.kamui.clearsolutiontest.id;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered 64-bit id generator for running several instances without coordination.
+ * An id is made of 41 bits of milliseconds since {@link #EPOCH}, 10 bits of node id and
+ * 12 bits of per-millisecond sequence, so every node can hand out 4096 ids per millisecond.
+ * The last timestamp and sequence are packed into one {@link AtomicLong} and advanced with CAS.
+ * If the clock goes backwards the generator keeps counting from the last timestamp it used.
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    public static final Instant EPOCH = Instant.parse("2024-01-01T00:00:00Z");
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private final LongSupplier clock;
+    // (timestamp << SEQUENCE_BITS) | sequence of the last issued id
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the node id embedded in {@code id} by the generator that issued it
+     */
+    public static long nodeIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH.toEpochMilli();
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else if ((last & MAX_SEQUENCE) < MAX_SEQUENCE) {
+                next = last + 1;
+            } else {
+                // sequence exhausted for this millisecond, wait for the clock to move on
+                Thread.onSpinWait();
+                continue;
+            }
+            if (state.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & MAX_SEQUENCE);
+            }
+        }
+    }
+
+    /**
+     * Ids of other nodes can never collide with ids of this one, so only ids of this node move it forward,
+     * which covers a clock that was set back across a restart.
+     */
+    @Override
+    public void advancePast(long id) {
+        if (nodeIdOf(id) != nodeId) {
+            return;
+        }
+        long issued = ((id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS) | (id & MAX_SEQUENCE);
+        state.accumulateAndGet(issued, Math::max);
+    }
+}
@@ -2,25 +2,31 @@ package dev.kamui.clearsolutiontest.model;
 
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
-import lombok.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
 
 import java.time.LocalDate;
 import java.util.Objects;
 
+/**
+ * An immutable state of a user. Updates build a new instance with {@link #toBuilder()},
+ * so a reader holding a user never sees it change.
+ */
 @Getter
-@Setter
 @AllArgsConstructor
-@NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
+@Jacksonized
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
 public class User {
-    private Long id;
-    private String firstName;
-    private String lastName;
-    private String email;
-    private LocalDate birthDate;
-    private Address address;
-    private String phoneNumber;
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final LocalDate birthDate;
+    private final Address address;
+    private final String phoneNumber;
 
     @Override
     public boolean equals(Object o) {
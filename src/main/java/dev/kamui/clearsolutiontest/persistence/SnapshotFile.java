@@ -0,0 +1,197 @@
+package dev.kamui.clearsolutiontest.persistence;
+
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary dump of all users at a point in time, named after the first log segment that is not
+ * covered by it. Layout: {@code [int magic][long segment]}, then per user
+ * {@code [int length][long version][user]}, then {@code [int -1][long count]}
+ * and a CRC32 of everything before it.
+ * Files are written under a temporary name and renamed once complete.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x55534E50;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CHUNK_SIZE = 4096;
+
+    private SnapshotFile() {
+    }
+
+    static Path write(Path directory, long segment, UserStore.Snapshot snapshot) throws IOException {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        long[] count = new long[1];
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE), crc))) {
+            out.writeInt(MAGIC);
+            out.writeLong(segment);
+            snapshot.forEach((user, version) -> {
+                byte[] encoded = UserCodec.encode(user);
+                try {
+                    out.writeInt(Long.BYTES + encoded.length);
+                    out.writeLong(version);
+                    out.write(encoded);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+            out.writeInt(-1);
+            out.writeLong(count[0]);
+            out.flush();
+            out.writeLong(crc.getValue());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        return Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads the newest snapshot with a valid checksum.
+     * {@code consumer} is called from several threads at once.
+     *
+     * @return the first log segment that is not covered by the loaded snapshot
+     */
+    static Optional<Long> loadLatest(Path directory, ObjLongConsumer<User> consumer) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            if (isValid(path)) {
+                return Optional.of(read(path, consumer));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Deletes all but the {@code keep} newest snapshots.
+     *
+     * @return the segment of the oldest snapshot that was kept
+     */
+    static Optional<Long> deleteOlder(Path directory, int keep) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        for (int i = 0; i < snapshots.size() - keep; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        return snapshots.isEmpty() ? Optional.empty()
+                : Optional.of(segmentOf(snapshots.get(Math.max(0, snapshots.size() - keep))));
+    }
+
+    private static boolean isValid(Path path) throws IOException {
+        long size = Files.size(path);
+        if (size < Long.BYTES) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream in = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE), crc)) {
+            byte[] chunk = new byte[BUFFER_SIZE];
+            long remaining = size - Long.BYTES;
+            while (remaining > 0) {
+                int read = in.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+                if (read < 0) {
+                    return false;
+                }
+                remaining -= read;
+            }
+            long expected = crc.getValue();
+            return new DataInputStream(in).readLong() == expected;
+        }
+    }
+
+    /**
+     * Reads records in chunks and decodes them on all cores, since decoding and indexing users
+     * costs far more than reading the file.
+     */
+    private static long read(Path path, ObjLongConsumer<User> consumer) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a user snapshot: " + path);
+            }
+            long segment = in.readLong();
+            List<byte[]> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (int length = in.readInt(); length >= 0; length = in.readInt()) {
+                byte[] record = new byte[length];
+                in.readFully(record);
+                chunk.add(record);
+                if (chunk.size() == CHUNK_SIZE) {
+                    submit(chunk, consumer, executor, inFlight, failure);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+            submit(chunk, consumer, executor, inFlight, failure);
+            inFlight.acquireUninterruptibly(threads * 2);
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            return segment;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void submit(List<byte[]> chunk, ObjLongConsumer<User> consumer, ExecutorService executor,
+                               Semaphore inFlight, AtomicReference<RuntimeException> failure) {
+        inFlight.acquireUninterruptibly();
+        executor.execute(() -> {
+            try {
+                for (byte[] record : chunk) {
+                    ByteBuffer buffer = ByteBuffer.wrap(record);
+                    long version = buffer.getLong();
+                    consumer.accept(UserCodec.decode(buffer), version);
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
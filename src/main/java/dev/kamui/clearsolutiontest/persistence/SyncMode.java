@@ -0,0 +1,16 @@
+package dev.kamui.clearsolutiontest.persistence;
+
+/**
+ * When a change counts as durable.
+ */
+public enum SyncMode {
+    /**
+     * The log is forced to disk in the background every sync interval; writes don't wait for it,
+     * so a crash can lose up to one interval of changes.
+     */
+    INTERVAL,
+    /**
+     * Every storage operation waits for the next background sync, so concurrent writes share one fsync.
+     */
+    GROUP
+}
@@ -0,0 +1,89 @@
+package dev.kamui.clearsolutiontest.persistence;
+
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Compact binary form of {@link User}: fixed-width numbers and length-prefixed UTF-8 strings,
+ * with a length of -1 for {@code null}.
+ */
+final class UserCodec {
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private UserCodec() {
+    }
+
+    static byte[] encode(User user) {
+        byte[][] strings = {
+                utf8(user.getFirstName()), utf8(user.getLastName()), utf8(user.getEmail()), utf8(user.getPhoneNumber())
+        };
+        Address address = user.getAddress();
+        byte[][] addressStrings = address == null ? new byte[0][] : new byte[][]{
+                utf8(address.country()), utf8(address.city()), utf8(address.state()), utf8(address.zip()), utf8(address.street())
+        };
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2 + 1 + size(strings) + size(addressStrings));
+        buffer.putLong(user.getId());
+        buffer.putLong(user.getBirthDate() == null ? NO_DATE : user.getBirthDate().toEpochDay());
+        for (byte[] string : strings) {
+            putString(buffer, string);
+        }
+        buffer.put((byte) (address == null ? 0 : 1));
+        for (byte[] string : addressStrings) {
+            putString(buffer, string);
+        }
+        return buffer.array();
+    }
+
+    static User decode(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        long epochDay = buffer.getLong();
+        User.UserBuilder user = User.builder()
+                .id(id)
+                .birthDate(epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay))
+                .firstName(getString(buffer))
+                .lastName(getString(buffer))
+                .email(getString(buffer))
+                .phoneNumber(getString(buffer));
+        if (buffer.get() == 1) {
+            user.address(new Address(getString(buffer), getString(buffer), getString(buffer),
+                    getString(buffer), getString(buffer)));
+        }
+        return user.build();
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int size(byte[][] strings) {
+        int size = 0;
+        for (byte[] string : strings) {
+            size += Integer.BYTES + (string == null ? 0 : string.length);
+        }
+        return size;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] string) {
+        if (string == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(string.length);
+            buffer.put(string);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,207 @@
+package dev.kamui.clearsolutiontest.persistence;
+
+import dev.kamui.clearsolutiontest.id.IdGenerator;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.UserStoreListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Makes {@link UserStore} durable. Every change is appended to a {@link WriteAheadLog},
+ * and a {@link SnapshotFile} of all users is written periodically, so that on startup only
+ * the log written after the latest snapshot has to be replayed. The id generator is moved past every
+ * recovered id, so new users never take the id of a user that is already stored.
+ * Enabled with {@code user.persistence.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "user.persistence.enabled", havingValue = "true")
+public class UserPersistence implements UserStoreListener {
+    private static final Logger log = LoggerFactory.getLogger(UserPersistence.class);
+
+    private static final int SNAPSHOTS_TO_KEEP = 2;
+
+    private final UserStore store;
+    private final IdGenerator idGenerator;
+    private final Path directory;
+    private final int segmentSize;
+    private final SyncMode syncMode;
+    private final Duration syncInterval;
+    private final Duration snapshotInterval;
+
+    // snapshots take their own thread, so the log keeps being synced while one is written
+    private final ScheduledExecutorService syncScheduler = scheduler("user-persistence-sync");
+    private final ScheduledExecutorService snapshotScheduler = scheduler("user-persistence-snapshot");
+    // log position of the last change appended by the current thread, for GROUP sync mode
+    private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+
+    private WriteAheadLog writeAheadLog;
+    // only touched by the sync thread
+    private boolean syncFailing;
+
+    public UserPersistence(UserStore store, IdGenerator idGenerator,
+                           @Value("${user.persistence.directory:data}") Path directory,
+                           @Value("${user.persistence.segment-size:67108864}") int segmentSize,
+                           @Value("${user.persistence.sync-mode:interval}") SyncMode syncMode,
+                           @Value("${user.persistence.sync-interval:10ms}") Duration syncInterval,
+                           @Value("${user.persistence.snapshot-interval:10m}") Duration snapshotInterval) {
+        this.store = store;
+        this.idGenerator = idGenerator;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncMode = syncMode;
+        this.syncInterval = syncInterval;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Loads the latest snapshot and replays the log after it, then starts logging new changes.
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        LongAccumulator maxId = new LongAccumulator(Math::max, 0);
+        long firstSegment = SnapshotFile.loadLatest(directory, (user, version) -> {
+            store.restore(user, version);
+            maxId.accumulate(user.getId());
+        }).orElse(0L);
+        // deletions seen in the log, so that an older change replayed later doesn't bring the user back
+        Map<Long, Long> deletions = new HashMap<>();
+        long lastSegment = WriteAheadLog.replay(directory, firstSegment, entry -> replay(entry, deletions, maxId));
+        idGenerator.advancePast(maxId.get());
+        writeAheadLog = new WriteAheadLog(directory, segmentSize, lastSegment + 1);
+        store.addListener(this);
+
+        long period = syncInterval.toNanos();
+        syncScheduler.scheduleWithFixedDelay(this::syncQuietly, period, period, TimeUnit.NANOSECONDS);
+        period = snapshotInterval.toNanos();
+        snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly, period, period, TimeUnit.NANOSECONDS);
+        log.info("Recovered {} users from {} in {} ms", store.size(), directory,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Writes a snapshot of all users and deletes the log segments no kept snapshot needs.
+     */
+    public void snapshot() throws IOException {
+        long segment = writeAheadLog.roll();
+        try (UserStore.Snapshot snapshot = store.openSnapshot()) {
+            SnapshotFile.write(directory, segment, snapshot);
+        }
+        long oldestKept = SnapshotFile.deleteOlder(directory, SNAPSHOTS_TO_KEEP).orElse(segment);
+        writeAheadLog.deleteSegmentsBefore(oldestKept);
+    }
+
+    @PreDestroy
+    public void close() {
+        syncScheduler.shutdown();
+        snapshotScheduler.shutdown();
+        writeAheadLog.close();
+    }
+
+    @Override
+    public void onCreated(User user, long version) {
+        append(WriteAheadLog.CREATE, version, UserCodec.encode(user));
+    }
+
+    @Override
+    public void onUpdated(User previous, User updated, long version) {
+        append(WriteAheadLog.UPDATE, version, UserCodec.encode(updated));
+    }
+
+    @Override
+    public void onDeleted(User deleted, long version) {
+        append(WriteAheadLog.DELETE, version, ByteBuffer.allocate(Long.BYTES).putLong(deleted.getId()).array());
+    }
+
+    @Override
+    public void afterWrite() {
+        if (syncMode != SyncMode.GROUP) {
+            return;
+        }
+        long[] position = lastAppended.get();
+        try {
+            writeAheadLog.awaitSynced(position[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(byte type, long version, byte[] payload) {
+        try {
+            lastAppended.get()[0] = writeAheadLog.append(type, version, payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void replay(WriteAheadLog.Entry entry, Map<Long, Long> deletions, LongAccumulator maxId) {
+        if (entry.type() == WriteAheadLog.DELETE) {
+            long id = entry.payload().getLong();
+            maxId.accumulate(id);
+            deletions.merge(id, entry.version(), Math::max);
+            store.restoreDeletion(id, entry.version());
+            return;
+        }
+        User user = UserCodec.decode(entry.payload());
+        maxId.accumulate(user.getId());
+        if (deletions.getOrDefault(user.getId(), Long.MIN_VALUE) < entry.version()) {
+            store.restore(user, entry.version());
+        }
+    }
+
+    /**
+     * Keeps the sync task scheduled when a sync fails, since a failed scheduled task is never run again and
+     * writers waiting for the sync would wait forever. A run of failures is logged once.
+     */
+    private void syncQuietly() {
+        try {
+            writeAheadLog.sync();
+        } catch (RuntimeException e) {
+            if (!syncFailing) {
+                log.error("Failed to sync the user log in {}, retrying", directory, e);
+                syncFailing = true;
+            }
+            return;
+        }
+        if (syncFailing) {
+            log.info("User log in {} is synced again", directory);
+            syncFailing = false;
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to write user snapshot to {}", directory, e);
+        }
+    }
+
+    private static ScheduledExecutorService scheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
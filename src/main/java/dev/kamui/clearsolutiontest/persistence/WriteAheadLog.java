@@ -0,0 +1,245 @@
+package dev.kamui.clearsolutiontest.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of user changes, written to memory-mapped segment files of a fixed size.
+ * A record is {@code [int length][int crc32][byte type][long version][payload]}, where the length
+ * and the checksum cover everything after the checksum. A zero length marks the end of the written
+ * part of a segment, and a record with a wrong checksum is a torn write that ends the log.
+ * Appending only copies into the mapping; {@link #sync()} forces it to disk.
+ */
+class WriteAheadLog implements Closeable {
+
+    static final byte CREATE = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private long segment;
+    private MappedByteBuffer buffer;
+    private volatile long appendedPosition;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private volatile long syncedPosition;
+
+    record Entry(byte type, long version, ByteBuffer payload) {
+    }
+
+    WriteAheadLog(Path directory, int segmentSize, long firstSegment) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segment = firstSegment;
+        this.buffer = map(firstSegment);
+        this.appendedPosition = position(firstSegment, 0);
+        this.syncedPosition = appendedPosition;
+    }
+
+    /**
+     * @return the log position right after the appended record
+     */
+    long append(byte type, long version, byte[] payload) throws IOException {
+        int length = 1 + Long.BYTES + payload.length;
+        if (HEADER_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes doesn't fit into a log segment");
+        }
+        ByteBuffer body = ByteBuffer.allocate(length).put(type).putLong(version).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+
+        appendLock.lock();
+        try {
+            if (buffer.remaining() < HEADER_SIZE + length) {
+                nextSegment();
+            }
+            buffer.putInt(length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(body.array());
+            appendedPosition = position(segment, buffer.position());
+            return appendedPosition;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Moves appends to a new segment.
+     *
+     * @return the index of the new segment; every record appended from now on is in it or a later one
+     */
+    long roll() throws IOException {
+        appendLock.lock();
+        try {
+            nextSegment();
+            return segment;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces everything appended so far to disk and wakes up the threads waiting for it.
+     */
+    void sync() {
+        MappedByteBuffer current;
+        long position;
+        appendLock.lock();
+        try {
+            current = buffer;
+            position = appendedPosition;
+        } finally {
+            appendLock.unlock();
+        }
+        if (position > syncedPosition) {
+            current.force();
+            markSynced(position);
+        }
+    }
+
+    /**
+     * Blocks until everything up to {@code position} is on disk.
+     */
+    void awaitSynced(long position) throws InterruptedIOException {
+        if (syncedPosition >= position) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (syncedPosition < position) {
+                synced.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the log to be synced");
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments that come before {@code segment}.
+     */
+    void deleteSegmentsBefore(long segment) throws IOException {
+        for (Path path : segments(directory)) {
+            if (segmentIndex(path) < segment) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+    /**
+     * Reads the records of segments starting from {@code firstSegment} in log order.
+     * A torn record ends its segment: it can only be the last write before a crash,
+     * since a segment is forced to disk before appends move to the next one.
+     *
+     * @return the index of the last existing segment, or {@code firstSegment - 1} if there is none
+     */
+    static long replay(Path directory, long firstSegment, Consumer<Entry> consumer) throws IOException {
+        long lastSegment = firstSegment - 1;
+        for (Path path : segments(directory)) {
+            long index = segmentIndex(path);
+            if (index >= firstSegment) {
+                replaySegment(path, consumer);
+                lastSegment = index;
+            }
+        }
+        return lastSegment;
+    }
+
+    private static void replaySegment(Path path, Consumer<Entry> consumer) throws IOException {
+        MappedByteBuffer segment;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        while (segment.remaining() >= HEADER_SIZE) {
+            int length = segment.getInt();
+            int checksum = segment.getInt();
+            if (length <= 0 || length > segment.remaining()) {
+                return;
+            }
+            ByteBuffer body = segment.slice(segment.position(), length);
+            segment.position(segment.position() + length);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return;
+            }
+            consumer.accept(new Entry(body.get(), body.getLong(), body));
+        }
+    }
+
+    private void nextSegment() throws IOException {
+        buffer.force();
+        markSynced(appendedPosition);
+        segment++;
+        buffer = map(segment);
+        appendedPosition = position(segment, 0);
+    }
+
+    private void markSynced(long position) {
+        syncLock.lock();
+        try {
+            if (position > syncedPosition) {
+                syncedPosition = position;
+                synced.signalAll();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private MappedByteBuffer map(long segment) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private long position(long segment, int offset) {
+        return segment * segmentSize + offset;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentIndex(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
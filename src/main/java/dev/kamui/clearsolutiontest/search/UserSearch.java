@@ -0,0 +1,61 @@
+package dev.kamui.clearsolutiontest.search;
+
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Criteria of a user search, {@code null} when not filtered on. Address fields match whole values
+ * and names match by prefix, both ignoring case. Birth dates are between {@code from} and {@code to}
+ * exclusive, like {@code getUsers}, and filtering on them needs both.
+ */
+public record UserSearch(String country, String city, String state, String zip,
+                         String firstNamePrefix, String lastNamePrefix,
+                         LocalDate from, LocalDate to) {
+
+    public boolean isEmpty() {
+        return country == null && city == null && state == null && zip == null
+                && firstNamePrefix == null && lastNamePrefix == null && !hasBirthDateRange();
+    }
+
+    /**
+     * @return whether the search filters on something, with both ends of a birth date range in order or none
+     */
+    public boolean isValid() {
+        return !isEmpty() && (from == null) == (to == null) && (from == null || !from.isAfter(to));
+    }
+
+    public boolean hasBirthDateRange() {
+        return from != null && to != null;
+    }
+
+    public boolean matches(User user) {
+        Address address = user.getAddress();
+        return matches(country, address, Address::country)
+                && matches(city, address, Address::city)
+                && matches(state, address, Address::state)
+                && matches(zip, address, Address::zip)
+                && startsWith(user.getFirstName(), firstNamePrefix)
+                && startsWith(user.getLastName(), lastNamePrefix)
+                && (!hasBirthDateRange() || user.getBirthDate().isAfter(from) && user.getBirthDate().isBefore(to));
+    }
+
+    static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean matches(String expected, Address address, Function<Address, String> field) {
+        if (expected == null) {
+            return true;
+        }
+        String value = address == null ? null : field.apply(address);
+        return value != null && normalize(value).equals(normalize(expected));
+    }
+
+    private static boolean startsWith(String value, String prefix) {
+        return prefix == null || value != null && normalize(value).startsWith(normalize(prefix));
+    }
+}
@@ -0,0 +1,311 @@
+package dev.kamui.clearsolutiontest.search;
+
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.UserStoreListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Finds users by {@link UserSearch} criteria without scanning the store. Every address value, name and
+ * birth day maps to a compressed bitmap of the ids of the users that have it; names are kept sorted,
+ * so a prefix is the union of a sub map. A search intersects the bitmaps of its criteria, smallest first.
+ * <p>
+ * The ids are split across stripes, each with its own bitmaps and lock, so that writers of different users
+ * rarely wait for each other, and a search holds one stripe at a time. Found users are read from the store
+ * after all stripes are released and checked against the criteria again, so a result never holds a user
+ * that no longer matches.
+ * <p>
+ * The index is built from the store by the first search and kept up to date by store events from then on,
+ * so writes pay nothing for it until search is used.
+ */
+@Component
+public class UserSearchIndex implements UserStoreListener {
+
+    private static final int STRIPES = 16;
+
+    private final UserStore store;
+    private final Timer searchTimer;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private volatile boolean built;
+
+    public UserSearchIndex(UserStore store, MeterRegistry meterRegistry) {
+        this.store = store;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        searchTimer = Timer.builder("users.search")
+                .description("Searches of users through the bitmap indexes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return up to {@code limit} users matching {@code search}, in the order of their ids
+     */
+    public List<User> search(UserSearch search, int limit) {
+        long started = System.nanoTime();
+        build();
+        Roaring64Bitmap matches = new Roaring64Bitmap();
+        for (Stripe stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                matches.or(stripe.matches(search));
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        List<User> users = new ArrayList<>();
+        for (LongIterator ids = matches.getLongIterator(); ids.hasNext() && users.size() < limit; ) {
+            store.findById(ids.next())
+                    .filter(search::matches)
+                    .ifPresent(users::add);
+        }
+        searchTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return users;
+    }
+
+    @Override
+    public void onCreated(User user, long version) {
+        update(user.getId(), stripe -> stripe.add(user));
+    }
+
+    @Override
+    public void onUpdated(User previous, User updated, long version) {
+        update(updated.getId(), stripe -> {
+            stripe.remove(previous);
+            stripe.add(updated);
+        });
+    }
+
+    @Override
+    public void onDeleted(User deleted, long version) {
+        update(deleted.getId(), stripe -> stripe.remove(deleted));
+    }
+
+    /**
+     * Indexes the store on first use. Writes that race with the scan are applied again once it's done,
+     * which is harmless as adding and removing ids are idempotent.
+     */
+    private void build() {
+        if (built) {
+            return;
+        }
+        int locked = 0;
+        try {
+            for (; locked < STRIPES; locked++) {
+                stripes[locked].lock.writeLock().lock();
+            }
+            if (!built) {
+                store.addListener(this);
+                store.findAll().forEach(user -> stripeOf(user.getId()).add(user));
+                built = true;
+            }
+        } finally {
+            while (locked > 0) {
+                stripes[--locked].lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void update(long id, Consumer<Stripe> change) {
+        Stripe stripe = stripeOf(id);
+        stripe.lock.writeLock().lock();
+        try {
+            change.accept(stripe);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    private Stripe stripeOf(long id) {
+        return stripes[Long.hashCode(id) & (STRIPES - 1)];
+    }
+
+    /**
+     * Bitmaps of the ids that fall in one stripe, guarded by its lock.
+     */
+    private static final class Stripe {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Roaring64Bitmap> countries = new HashMap<>();
+        private final Map<String, Roaring64Bitmap> cities = new HashMap<>();
+        private final Map<String, Roaring64Bitmap> states = new HashMap<>();
+        private final Map<String, Roaring64Bitmap> zips = new HashMap<>();
+        private final NavigableMap<String, Roaring64Bitmap> firstNames = new TreeMap<>();
+        private final NavigableMap<String, Roaring64Bitmap> lastNames = new TreeMap<>();
+        // birth dates by day, month and year, so that a range is mostly a few month and year bitmaps
+        private final Map<Long, Roaring64Bitmap> birthDays = new HashMap<>();
+        private final Map<Long, Roaring64Bitmap> birthMonths = new HashMap<>();
+        private final Map<Long, Roaring64Bitmap> birthYears = new HashMap<>();
+
+        /**
+         * @return a new bitmap of the ids in this stripe that match {@code search}
+         */
+        private Roaring64Bitmap matches(UserSearch search) {
+            List<Roaring64Bitmap> filters = new ArrayList<>();
+            if (search.country() != null) {
+                filters.add(value(countries, search.country()));
+            }
+            if (search.city() != null) {
+                filters.add(value(cities, search.city()));
+            }
+            if (search.state() != null) {
+                filters.add(value(states, search.state()));
+            }
+            if (search.zip() != null) {
+                filters.add(value(zips, search.zip()));
+            }
+            if (search.firstNamePrefix() != null) {
+                filters.add(prefix(firstNames, search.firstNamePrefix()));
+            }
+            if (search.lastNamePrefix() != null) {
+                filters.add(prefix(lastNames, search.lastNamePrefix()));
+            }
+            if (search.hasBirthDateRange()) {
+                filters.add(bornBetween(search.from().plusDays(1), search.to().minusDays(1)));
+            }
+            filters.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+            Roaring64Bitmap matches = filters.isEmpty() ? new Roaring64Bitmap() : filters.get(0).clone();
+            for (int i = 1; i < filters.size() && !matches.isEmpty(); i++) {
+                matches.and(filters.get(i));
+            }
+            return matches;
+        }
+
+        /**
+         * @return users born from {@code first} to {@code last} inclusive, as whole years and months
+         * with single days only at the edges, OR-ed smallest first
+         */
+        private Roaring64Bitmap bornBetween(LocalDate first, LocalDate last) {
+            List<Roaring64Bitmap> days = new ArrayList<>();
+            List<Roaring64Bitmap> months = new ArrayList<>();
+            List<Roaring64Bitmap> years = new ArrayList<>();
+            LocalDate day = first;
+            while (!day.isAfter(last)) {
+                LocalDate nextYear = day.plusYears(1);
+                LocalDate nextMonth = day.plusMonths(1);
+                if (day.getDayOfYear() == 1 && !nextYear.minusDays(1).isAfter(last)) {
+                    addIfPresent(years, birthYears.get(yearKey(day)));
+                    day = nextYear;
+                } else if (day.getDayOfMonth() == 1 && !nextMonth.minusDays(1).isAfter(last)) {
+                    addIfPresent(months, birthMonths.get(monthKey(day)));
+                    day = nextMonth;
+                } else {
+                    addIfPresent(days, birthDays.get(day.toEpochDay()));
+                    day = day.plusDays(1);
+                }
+            }
+            Roaring64Bitmap union = new Roaring64Bitmap();
+            for (List<Roaring64Bitmap> level : List.of(days, months, years)) {
+                for (Roaring64Bitmap ids : level) {
+                    union.or(ids);
+                }
+            }
+            return union;
+        }
+
+        private void add(User user) {
+            long id = user.getId();
+            Address address = user.getAddress();
+            if (address != null) {
+                addValue(countries, address.country(), id);
+                addValue(cities, address.city(), id);
+                addValue(states, address.state(), id);
+                addValue(zips, address.zip(), id);
+            }
+            addValue(firstNames, user.getFirstName(), id);
+            addValue(lastNames, user.getLastName(), id);
+            LocalDate birthDate = user.getBirthDate();
+            addId(birthDays, birthDate.toEpochDay(), id);
+            addId(birthMonths, monthKey(birthDate), id);
+            addId(birthYears, yearKey(birthDate), id);
+        }
+
+        private void remove(User user) {
+            long id = user.getId();
+            Address address = user.getAddress();
+            if (address != null) {
+                removeValue(countries, address.country(), id);
+                removeValue(cities, address.city(), id);
+                removeValue(states, address.state(), id);
+                removeValue(zips, address.zip(), id);
+            }
+            removeValue(firstNames, user.getFirstName(), id);
+            removeValue(lastNames, user.getLastName(), id);
+            LocalDate birthDate = user.getBirthDate();
+            removeId(birthDays, birthDate.toEpochDay(), id);
+            removeId(birthMonths, monthKey(birthDate), id);
+            removeId(birthYears, yearKey(birthDate), id);
+        }
+    }
+
+    private static void addIfPresent(List<Roaring64Bitmap> bitmaps, Roaring64Bitmap ids) {
+        if (ids != null) {
+            bitmaps.add(ids);
+        }
+    }
+
+    private static long monthKey(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    private static long yearKey(LocalDate date) {
+        return date.getYear();
+    }
+
+    private static Roaring64Bitmap value(Map<String, Roaring64Bitmap> index, String value) {
+        Roaring64Bitmap ids = index.get(UserSearch.normalize(value));
+        return ids == null ? new Roaring64Bitmap() : ids;
+    }
+
+    private static Roaring64Bitmap prefix(NavigableMap<String, Roaring64Bitmap> index, String prefix) {
+        String from = UserSearch.normalize(prefix);
+        Roaring64Bitmap union = new Roaring64Bitmap();
+        for (Roaring64Bitmap ids : index.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            union.or(ids);
+        }
+        return union;
+    }
+
+    private static void addValue(Map<String, Roaring64Bitmap> index, String value, long id) {
+        if (value != null) {
+            addId(index, UserSearch.normalize(value), id);
+        }
+    }
+
+    private static <K> void addId(Map<K, Roaring64Bitmap> index, K key, long id) {
+        index.computeIfAbsent(key, k -> new Roaring64Bitmap()).addLong(id);
+    }
+
+    private static void removeValue(Map<String, Roaring64Bitmap> index, String value, long id) {
+        if (value != null) {
+            removeId(index, UserSearch.normalize(value), id);
+        }
+    }
+
+    private static <K> void removeId(Map<K, Roaring64Bitmap> index, K key, long id) {
+        Roaring64Bitmap ids = index.get(key);
+        if (ids != null) {
+            ids.removeLong(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package dev.kamui.clearsolutiontest.sharding;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends requests to the other instances. Every request carries {@link #LOCAL_HEADER} with the shared
+ * {@code user.sharding.secret}, so the receiving instance serves it from its own shard instead of routing it again.
+ */
+class ShardClient {
+
+    static final String LOCAL_HEADER = "X-Shard-Local";
+
+    // the response headers the controller and the admission control set besides the body
+    private static final List<String> RESPONSE_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG,
+            HttpHeaders.VARY, HttpHeaders.CACHE_CONTROL, HttpHeaders.RETRY_AFTER);
+
+    private final List<URI> instances;
+    private final Duration timeout;
+    private final String secret;
+    private final HttpClient client;
+
+    ShardClient(List<URI> instances, Duration timeout, String secret) {
+        this.instances = instances;
+        this.timeout = timeout;
+        this.secret = secret;
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * Sends {@code request} as it is, with {@code body} and the given request headers, to {@code shard}.
+     */
+    CompletableFuture<HttpResponse<byte[]>> send(int shard, HttpServletRequest request, byte[] body,
+                                                 List<String> headers) {
+        return send(shard, request, body.length == 0
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(body), headers);
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(int shard, HttpServletRequest request,
+                                                         HttpRequest.BodyPublisher body, List<String> headers) {
+        String query = request.getQueryString();
+        HttpRequest.Builder peerRequest = HttpRequest.newBuilder(
+                        instances.get(shard).resolve(request.getRequestURI() + (query == null ? "" : "?" + query)))
+                .timeout(timeout)
+                .header(LOCAL_HEADER, secret)
+                .method(request.getMethod(), body);
+        for (String header : headers) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                peerRequest.header(header, value);
+            }
+        }
+        return client.sendAsync(peerRequest.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Sends {@code request} like {@link #send(int, HttpServletRequest, byte[], List)}, streaming {@code body}
+     * as it is read. The request fails when reading the body does.
+     */
+    CompletableFuture<HttpResponse<byte[]>> send(int shard, HttpServletRequest request, InputStream body,
+                                                 List<String> headers) {
+        return send(shard, request, HttpRequest.BodyPublishers.ofInputStream(() -> body), headers);
+    }
+
+    /**
+     * @return whether the value of {@link #LOCAL_HEADER} of a request is the shared secret of the instances
+     */
+    boolean isSecret(String local) {
+        return MessageDigest.isEqual(local.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the response of another instance as the response to the client.
+     */
+    static void relay(HttpResponse<byte[]> peerResponse, HttpServletResponse response) throws IOException {
+        response.setStatus(peerResponse.statusCode());
+        for (String header : RESPONSE_HEADERS) {
+            peerResponse.headers().firstValue(header).ifPresent(value -> response.setHeader(header, value));
+        }
+        response.getOutputStream().write(peerResponse.body());
+    }
+}
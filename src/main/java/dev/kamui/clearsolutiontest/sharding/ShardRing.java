@@ -0,0 +1,67 @@
+package dev.kamui.clearsolutiontest.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Consistent hash ring over the shards: every shard owns {@code virtualNodes} points of the 64-bit hash space
+ * and a key belongs to the shard of the first point at or after its hash, wrapping around.
+ * Adding a shard to N moves only about 1/(N+1) of the keys, all of them to the new shard.
+ */
+public class ShardRing {
+
+    private final long[] points;
+    private final int[] shards;
+
+    public ShardRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("Shard ring needs at least one shard and one virtual node");
+        }
+        long[][] ring = new long[shardCount * virtualNodes][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring[shard * virtualNodes + node] = new long[]{hash("shard-" + shard + "#" + node), shard};
+            }
+        }
+        Arrays.sort(ring, (a, b) -> Long.compareUnsigned(a[0], b[0]));
+        points = new long[ring.length];
+        shards = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            shards[i] = (int) ring[i][1];
+        }
+    }
+
+    public int shardOf(String key) {
+        long hash = hash(key);
+        // first point at or after the hash, in unsigned order
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[middle], hash) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return shards[low == points.length ? 0 : low];
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, finished with the MurmurHash3 mix so that similar keys spread out.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,845 @@
+package dev.kamui.clearsolutiontest.sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.kamui.clearsolutiontest.dto.UserCursor;
+import dev.kamui.clearsolutiontest.dto.UserDataListResponse;
+import dev.kamui.clearsolutiontest.dto.UserStatsResponse;
+import dev.kamui.clearsolutiontest.format.PayloadFormats;
+import dev.kamui.clearsolutiontest.id.SnowflakeIdGenerator;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.stats.UserStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.ToIntFunction;
+
+/**
+ * Partitions users across the instances listed in {@code user.sharding.instances}, enabled with
+ * {@code user.sharding.enabled=true}. A user lives on the shard its email hashes to on a {@link ShardRing},
+ * which keeps emails unique across shards, and gets a snowflake id whose node id is the index of that shard,
+ * so every instance runs with {@code user.id.generator=snowflake} and its own index as {@code user.id.node-id}.
+ * <p>
+ * Instances tell each other's requests apart by {@code user.sharding.secret}; a client request that claims
+ * to come from another instance without it is rejected with 403.
+ * <p>
+ * Any instance accepts any request: creations go to the shard of the email, bulk and batch update lines are
+ * grouped by shard, reads, updates and deletions of one user go to the shard in its id, and range queries and searches run on
+ * all shards at once and merge their sorted results, as statistics sum theirs. Streaming ranges, exports and change streams only cover
+ * the shard that serves them.
+ */
+@Component
+@ConditionalOnProperty(name = "user.sharding.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ShardRoutingFilter extends OncePerRequestFilter {
+
+    private static final String USERS_PATH = "/api/v1/users";
+    private static final List<String> FORWARDED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT,
+            HttpHeaders.IF_MATCH, HttpHeaders.IF_NONE_MATCH);
+    private static final List<String> SCATTERED_HEADERS = List.of(HttpHeaders.ACCEPT);
+    private static final Comparator<User> BY_BIRTH_DATE = Comparator.comparing(User::getBirthDate)
+            .thenComparingLong(User::getId);
+    private static final Comparator<User> BY_ID = Comparator.comparingLong(User::getId);
+    // the shard of a batch update line that would move the email of a user to another shard
+    private static final int EMAIL_OF_OTHER_SHARD = -1;
+
+    private final int self;
+    private final int shardCount;
+    private final int batchSize;
+    private final ShardRing ring;
+    private final ShardClient client;
+    private final ObjectMapper objectMapper;
+    private final PayloadFormats payloadFormats;
+    private final MeterRegistry meterRegistry;
+
+    public ShardRoutingFilter(@Value("${user.sharding.instances}") List<URI> instances,
+                              @Value("${user.id.generator:block}") String idGenerator,
+                              @Value("${user.id.node-id:-1}") int nodeId,
+                              @Value("${user.sharding.virtual-nodes:128}") int virtualNodes,
+                              @Value("${user.sharding.timeout:5s}") Duration timeout,
+                              @Value("${user.bulk.batch-size:1000}") int batchSize,
+                              @Value("${user.sharding.secret:}") String secret,
+                              ObjectMapper objectMapper, PayloadFormats payloadFormats,
+                              MeterRegistry meterRegistry) {
+        if (!"snowflake".equals(idGenerator) || nodeId < 0 || nodeId >= instances.size()) {
+            throw new IllegalStateException("Sharding needs user.id.generator=snowflake and user.id.node-id set "
+                    + "to the index of this instance in user.sharding.instances");
+        }
+        if (secret.isBlank()) {
+            throw new IllegalStateException("Sharding needs user.sharding.secret shared by all instances");
+        }
+        this.self = nodeId;
+        this.shardCount = instances.size();
+        this.batchSize = batchSize;
+        this.ring = new ShardRing(shardCount, virtualNodes);
+        this.client = new ShardClient(instances, timeout, secret);
+        this.objectMapper = objectMapper;
+        this.payloadFormats = payloadFormats;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String local = request.getHeader(ShardClient.LOCAL_HEADER);
+        if (local != null && !client.isSecret(local)) {
+            writeError(response, HttpStatus.FORBIDDEN, ShardClient.LOCAL_HEADER + " needs the secret of the instances");
+            return;
+        }
+        if (local != null || !path.startsWith(USERS_PATH)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String resource = path.substring(USERS_PATH.length());
+        HttpMethod method = HttpMethod.valueOf(request.getMethod());
+        if (resource.isEmpty() && method == HttpMethod.POST) {
+            createUser(request, response, chain);
+        } else if (resource.isEmpty() && method == HttpMethod.GET && !"true".equals(request.getParameter("stream"))) {
+            scatter(request, response, chain, BY_BIRTH_DATE,
+                    parseLimit(request.getParameter("limit"), Integer.MAX_VALUE), true);
+        } else if (resource.equals("/search") && method == HttpMethod.GET) {
+            scatter(request, response, chain, BY_ID, parseLimit(request.getParameter("limit"), 100), false);
+        } else if (resource.equals("/stats") && method == HttpMethod.GET) {
+            sumStats(request, response, chain);
+        } else if (resource.equals("/bulk") && method == HttpMethod.POST) {
+            createUsers(request, response, chain);
+        } else if (resource.equals("/batch") && method == HttpMethod.PATCH) {
+            updateUsers(request, response, chain);
+        } else if (resource.matches("/\\d{1,18}")) {
+            routeById(Long.parseLong(resource.substring(1)), request, response, chain);
+        } else {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private void createUser(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        byte[] body = request.getInputStream().readAllBytes();
+        int shard = shardOfEmail(body, request.getContentType());
+        route(shard < 0 ? self : shard, new BufferedBodyRequest(request, body), body, response, chain);
+    }
+
+    private void routeById(long id, HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        int shard = shardOfId(id);
+        byte[] body = request.getInputStream().readAllBytes();
+        if (HttpMethod.PUT.matches(request.getMethod())) {
+            int emailShard = shardOfEmail(body, request.getContentType());
+            if (emailShard >= 0 && emailShard != shard) {
+                writeError(response, HttpStatus.BAD_REQUEST, "email belongs to another shard");
+                return;
+            }
+        }
+        route(shard, new BufferedBodyRequest(request, body), body, response, chain);
+    }
+
+    private void route(int shard, HttpServletRequest request, byte[] body, HttpServletResponse response,
+                       FilterChain chain) throws ServletException, IOException {
+        if (shard == self) {
+            count("local");
+            chain.doFilter(request, response);
+            return;
+        }
+        count("forwarded");
+        try {
+            ShardClient.relay(await(client.send(shard, request, body, FORWARDED_HEADERS)), response);
+        } catch (IOException e) {
+            writeError(response, HttpStatus.BAD_GATEWAY, "shard " + shard + " is unavailable");
+        }
+    }
+
+    /**
+     * Runs a list query on every shard and answers with the first {@code limit} users of all of them in
+     * {@code order}. The local part runs while the other shards work on theirs. A paged query gets a cursor
+     * after the last merged user when any shard had more, which is where every shard resumes from next time.
+     * Every shard answers in the format the client accepts, and the merged answer keeps that format.
+     */
+    private void scatter(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                         Comparator<User> order, int limit, boolean paged) throws ServletException, IOException {
+        count("scattered");
+        List<CompletableFuture<HttpResponse<byte[]>>> peers = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (shard != self) {
+                peers.add(client.send(shard, request, new byte[0], SCATTERED_HEADERS));
+            }
+        }
+        LocalResponse local = new LocalResponse(response);
+        chain.doFilter(new UnconditionalRequest(request), local);
+        if (local.getStatus() != HttpStatus.OK.value()) {
+            local.copyBodyToResponse();
+            return;
+        }
+
+        List<User> users = new ArrayList<>();
+        String contentType = local.getContentType();
+        boolean more = addPage(local.getContentAsByteArray(), contentType, users);
+        for (int i = 0; i < peers.size(); i++) {
+            HttpResponse<byte[]> page;
+            try {
+                page = await(peers.get(i));
+            } catch (IOException e) {
+                writeError(response, HttpStatus.BAD_GATEWAY, "shard " + (i < self ? i : i + 1) + " is unavailable");
+                return;
+            }
+            if (page.statusCode() != HttpStatus.OK.value()) {
+                ShardClient.relay(page, response);
+                return;
+            }
+            more |= addPage(page.body(), contentTypeOf(page), users);
+        }
+        users.sort(order);
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            more = true;
+        }
+        String nextCursor = paged && more && !users.isEmpty() ? UserCursor.encode(users.get(users.size() - 1)) : null;
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(contentType);
+        payloadFormats.mapper(contentType).writeValue(response.getOutputStream(),
+                new UserDataListResponse(HttpStatus.OK.value(), users, nextCursor));
+    }
+
+    /**
+     * Answers with the statistics of all shards added up, the local ones counted while the other shards count theirs.
+     */
+    private void sumStats(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        count("scattered");
+        List<CompletableFuture<HttpResponse<byte[]>>> peers = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (shard != self) {
+                peers.add(client.send(shard, request, new byte[0], SCATTERED_HEADERS));
+            }
+        }
+        LocalResponse local = new LocalResponse(response);
+        chain.doFilter(new UnconditionalRequest(request), local);
+        if (local.getStatus() != HttpStatus.OK.value()) {
+            local.copyBodyToResponse();
+            return;
+        }
+
+        String contentType = local.getContentType();
+        UserStats stats = payloadFormats.mapper(contentType)
+                .readValue(local.getContentAsByteArray(), UserStatsResponse.class).data();
+        for (int i = 0; i < peers.size(); i++) {
+            HttpResponse<byte[]> peer;
+            try {
+                peer = await(peers.get(i));
+            } catch (IOException e) {
+                writeError(response, HttpStatus.BAD_GATEWAY, "shard " + (i < self ? i : i + 1) + " is unavailable");
+                return;
+            }
+            if (peer.statusCode() != HttpStatus.OK.value()) {
+                ShardClient.relay(peer, response);
+                return;
+            }
+            stats = stats.plus(payloadFormats.mapper(contentTypeOf(peer))
+                    .readValue(peer.body(), UserStatsResponse.class).data());
+        }
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(contentType);
+        payloadFormats.mapper(contentType).writeValue(response.getOutputStream(),
+                new UserStatsResponse(HttpStatus.OK.value(), stats));
+    }
+
+    /**
+     * @return whether the shard has more users after the page
+     */
+    private boolean addPage(byte[] body, String contentType, List<User> users) throws IOException {
+        UserDataListResponse page = payloadFormats.mapper(contentType).readValue(body, UserDataListResponse.class);
+        users.addAll(page.data());
+        return page.nextCursor() != null;
+    }
+
+    private static String contentTypeOf(HttpResponse<byte[]> response) {
+        return response.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(null);
+    }
+
+    private void createUsers(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        scatterLines(request, response, chain, line -> {
+            int shard = shardOfEmail(line, MediaType.APPLICATION_JSON_VALUE);
+            return shard < 0 ? self : shard;
+        }, "created");
+    }
+
+    /**
+     * Sends the lines of a batch update to the shards in their ids. A line that would give a user an email
+     * of another shard fails here, as a PUT would. An all-or-nothing batch must only change users of one shard:
+     * it is streamed to the shard of its first line, and stopped with a 400 at the first line of another one,
+     * before the shard has read the whole batch and applied any of it.
+     */
+    private void updateUsers(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!"true".equals(request.getParameter("atomic"))) {
+            scatterLines(request, response, chain, this::shardOfPatch, "updated");
+            return;
+        }
+        OneShardLines lines = new OneShardLines(request);
+        int shard = lines.shard();
+        if (shard == EMAIL_OF_OTHER_SHARD) {
+            writeError(response, HttpStatus.BAD_REQUEST, "an atomic batch must only change users of one shard");
+            return;
+        }
+        if (shard == self) {
+            count("local");
+            LocalResponse local = new LocalResponse(response);
+            try {
+                chain.doFilter(new LineStreamRequest(request, lines::next), local);
+            } catch (IOException | ServletException e) {
+                if (!lines.mixed) {
+                    throw e;
+                }
+            }
+            if (lines.mixed) {
+                writeError(response, HttpStatus.BAD_REQUEST, "an atomic batch must only change users of one shard");
+            } else {
+                local.copyBodyToResponse();
+            }
+            return;
+        }
+        count("forwarded");
+        HttpResponse<byte[]> shardResponse;
+        try {
+            shardResponse = await(client.send(shard, request, new LinesInputStream(lines::next), FORWARDED_HEADERS));
+        } catch (IOException e) {
+            if (lines.mixed) {
+                writeError(response, HttpStatus.BAD_REQUEST, "an atomic batch must only change users of one shard");
+            } else {
+                writeError(response, HttpStatus.BAD_GATEWAY, "shard " + shard + " is unavailable");
+            }
+            return;
+        }
+        ShardClient.relay(shardResponse, response);
+    }
+
+    /**
+     * Sends every shard its own lines of an NDJSON body and merges their results back into line order.
+     * The body is read as the local controller reads its own lines from it, and the lines of other shards are sent
+     * in batches of {@code user.bulk.batch-size}, one batch in flight per shard, so neither the body nor the lines
+     * of a shard are held in memory at once; only the results are, to be merged.
+     * Lines keep their numbers in the original body; the lines of a shard that can't be reached fail with 502.
+     * The results are counted as {@code succeeded} when they have an id, and as failed otherwise.
+     */
+    private void scatterLines(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                              ToIntFunction<byte[]> shardOfLine, String succeeded) throws ServletException, IOException {
+        LineScatter scatter = new LineScatter(request, shardOfLine);
+        LocalResponse local = new LocalResponse(response);
+        chain.doFilter(new LineStreamRequest(request, scatter::nextLocalLine), local);
+        scatter.finish();
+        if (!scatter.forwarded && scatter.results.isEmpty()) {
+            count("local");
+            local.copyBodyToResponse();
+            return;
+        }
+
+        count("scattered");
+        List<ObjectNode> results = scatter.results;
+        addResults(local.getStatus(), local.getContentAsByteArray(), scatter.localLineNumbers, results);
+        results.sort(Comparator.comparingInt(result -> result.get("line").asInt()));
+
+        ObjectNode merged = objectMapper.createObjectNode();
+        merged.put("code", HttpStatus.OK.value());
+        ArrayNode mergedResults = merged.putArray("results");
+        results.forEach(mergedResults::add);
+        long succeededCount = results.stream().filter(result -> result.has("id")).count();
+        merged.put(succeeded, succeededCount);
+        merged.put("failed", results.size() - succeededCount);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), merged);
+    }
+
+    /**
+     * Adds the results of one shard with their lines numbered as in the original body,
+     * or a failure for each of its lines when the shard didn't answer with results.
+     */
+    private void addResults(int status, byte[] body, List<Integer> lineNumbers, List<ObjectNode> results)
+            throws IOException {
+        if (status != HttpStatus.OK.value()) {
+            for (int lineNumber : lineNumbers) {
+                results.add(failure(lineNumber, HttpStatus.BAD_GATEWAY, "shard is unavailable"));
+            }
+            return;
+        }
+        for (JsonNode result : objectMapper.readTree(body).path("results")) {
+            ObjectNode numbered = (ObjectNode) result;
+            numbered.put("line", lineNumbers.get(result.get("line").asInt() - 1));
+            results.add(numbered);
+        }
+    }
+
+    private ObjectNode failure(int lineNumber, HttpStatus status, String message) {
+        ObjectNode failure = objectMapper.createObjectNode();
+        failure.put("line", lineNumber);
+        failure.put("code", status.value());
+        failure.put("message", message);
+        return failure;
+    }
+
+    /**
+     * @return the shard in the {@code id} of a JSON batch update line, this one when it has none and fails
+     * validation here, or {@link #EMAIL_OF_OTHER_SHARD} when it changes the email to one of another shard
+     */
+    private int shardOfPatch(byte[] json) {
+        JsonNode patch;
+        try {
+            patch = objectMapper.readTree(json);
+        } catch (IOException e) {
+            return self;
+        }
+        if (!patch.path("id").isIntegralNumber() || !patch.path("id").canConvertToLong()) {
+            return self;
+        }
+        int shard = shardOfId(patch.path("id").asLong());
+        JsonNode email = patch.path("email");
+        return email.isTextual() && ring.shardOf(email.asText()) != shard ? EMAIL_OF_OTHER_SHARD : shard;
+    }
+
+    /**
+     * @return the shard of the {@code email} of a user in any of the accepted formats, or -1 when there is none to route by,
+     * in which case the request is served locally and fails validation there
+     */
+    private int shardOfEmail(byte[] body, String contentType) {
+        try {
+            JsonNode email = payloadFormats.mapper(contentType).readTree(body).path("email");
+            return email.isTextual() ? ring.shardOf(email.asText()) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private int shardOfId(long id) {
+        long node = SnowflakeIdGenerator.nodeIdOf(id);
+        // ids that no shard could have issued are not found wherever they are looked up
+        return node < shardCount ? (int) node : self;
+    }
+
+    private static int parseLimit(String limit, int defaultLimit) {
+        try {
+            return limit == null ? defaultLimit : Math.max(Integer.parseInt(limit), 1);
+        } catch (NumberFormatException e) {
+            return defaultLimit;
+        }
+    }
+
+    private static HttpResponse<byte[]> await(CompletableFuture<HttpResponse<byte[]>> response) throws IOException {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                Map.of("error_details", Map.of("code", status.value(), "message", message)));
+    }
+
+    private void count(String route) {
+        meterRegistry.counter("users.sharding.requests", "route", route).increment();
+    }
+
+    /**
+     * Reads the lines of an NDJSON body for {@link #scatterLines}: hands the lines of this shard to the local
+     * controller and sends the others to their shards in batches, keeping the results of those batches.
+     */
+    private final class LineScatter {
+        private final HttpServletRequest request;
+        private final ToIntFunction<byte[]> shardOfLine;
+        private final BufferedReader reader;
+        private final Map<Integer, PeerBatch> pending = new TreeMap<>();
+        private final Map<Integer, PeerBatch> inFlight = new TreeMap<>();
+        final List<Integer> localLineNumbers = new ArrayList<>();
+        final List<ObjectNode> results = new ArrayList<>();
+        boolean forwarded;
+        private int lineNumber;
+
+        LineScatter(HttpServletRequest request, ToIntFunction<byte[]> shardOfLine) throws IOException {
+            this.request = request;
+            this.shardOfLine = shardOfLine;
+            this.reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return the next line of this shard, after routing the lines of other shards before it
+         */
+        String nextLocalLine() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                int shard = shardOfLine.applyAsInt(line.getBytes(StandardCharsets.UTF_8));
+                if (shard == self) {
+                    localLineNumbers.add(lineNumber);
+                    return line;
+                }
+                if (shard == EMAIL_OF_OTHER_SHARD) {
+                    results.add(failure(lineNumber, HttpStatus.BAD_REQUEST, "email belongs to another shard"));
+                    continue;
+                }
+                PeerBatch batch = pending.computeIfAbsent(shard, s -> new PeerBatch());
+                batch.add(lineNumber, line);
+                if (batch.lineNumbers.size() == batchSize) {
+                    send(shard);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Routes the lines the local controller left unread, sends the last batches and waits for all of them.
+         */
+        void finish() throws IOException {
+            while (nextLocalLine() != null) {
+                // the controller stopped reading, its response covers the lines it read
+            }
+            for (int shard : List.copyOf(pending.keySet())) {
+                send(shard);
+            }
+            for (int shard : List.copyOf(inFlight.keySet())) {
+                awaitBatch(shard);
+            }
+        }
+
+        private void send(int shard) throws IOException {
+            awaitBatch(shard);
+            PeerBatch batch = pending.remove(shard);
+            batch.response = client.send(shard, request, batch.lines.toString().getBytes(StandardCharsets.UTF_8),
+                    FORWARDED_HEADERS);
+            inFlight.put(shard, batch);
+            forwarded = true;
+        }
+
+        private void awaitBatch(int shard) throws IOException {
+            PeerBatch batch = inFlight.remove(shard);
+            if (batch == null) {
+                return;
+            }
+            HttpResponse<byte[]> shardResults;
+            try {
+                shardResults = await(batch.response);
+            } catch (IOException e) {
+                shardResults = null;
+            }
+            addResults(shardResults == null ? HttpStatus.BAD_GATEWAY.value() : shardResults.statusCode(),
+                    shardResults == null ? null : shardResults.body(), batch.lineNumbers, results);
+        }
+    }
+
+    private static final class PeerBatch {
+        final List<Integer> lineNumbers = new ArrayList<>();
+        final StringBuilder lines = new StringBuilder();
+        CompletableFuture<HttpResponse<byte[]>> response;
+
+        void add(int lineNumber, String line) {
+            lineNumbers.add(lineNumber);
+            lines.append(line).append('\n');
+        }
+    }
+
+    /**
+     * Reads the lines of an all-or-nothing batch and fails the read at the first line of another shard
+     * than the first line's, so that whoever reads them never gets the whole batch.
+     */
+    private final class OneShardLines {
+        private final BufferedReader reader;
+        private String first;
+        private int shard;
+        volatile boolean mixed;
+
+        OneShardLines(HttpServletRequest request) throws IOException {
+            reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+            first = nextNonBlank();
+            shard = first == null ? self : shardOfPatch(first.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int shard() {
+            return shard;
+        }
+
+        String next() throws IOException {
+            if (first != null) {
+                String line = first;
+                first = null;
+                return line;
+            }
+            String line = nextNonBlank();
+            if (line != null && shardOfPatch(line.getBytes(StandardCharsets.UTF_8)) != shard) {
+                mixed = true;
+                throw new IOException("An atomic batch must only change users of one shard");
+            }
+            return line;
+        }
+
+        private String nextNonBlank() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.isBlank());
+            return line;
+        }
+    }
+
+    private interface LineSource {
+
+        /**
+         * @return the next line, or {@code null} at the end
+         */
+        String next() throws IOException;
+    }
+
+    /**
+     * Turns lines back into an NDJSON body as it is read.
+     */
+    private static final class LinesInputStream extends InputStream {
+        private final LineSource lines;
+        private byte[] line = new byte[0];
+        private int position;
+        private boolean finished;
+
+        LinesInputStream(LineSource lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? line[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int read = Math.min(len, line.length - position);
+            System.arraycopy(line, position, b, off, read);
+            position += read;
+            return read;
+        }
+
+        boolean isFinished() {
+            return finished;
+        }
+
+        private boolean fill() throws IOException {
+            while (position == line.length) {
+                String next = finished ? null : lines.next();
+                if (next == null) {
+                    finished = true;
+                    return false;
+                }
+                line = (next + '\n').getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Gives the controller a body made of the lines it should serve, read from the original body as it goes.
+     */
+    private static final class LineStreamRequest extends HttpServletRequestWrapper {
+        private final LinesInputStream in;
+
+        LineStreamRequest(HttpServletRequest request, LineSource lines) {
+            super(request);
+            this.in = new LinesInputStream(lines);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return new ServletInputStream() {
+                @Override
+                public int read() throws IOException {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.isFinished();
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+    }
+
+    /**
+     * Replays a body that was already read to find the shard.
+     */
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new StringReader(new String(body, StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+
+    /**
+     * Hides {@code If-None-Match} from the local part of a merged query: its ETag only covers this shard.
+     */
+    private static final class UnconditionalRequest extends HttpServletRequestWrapper {
+
+        UnconditionalRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+    }
+
+    /**
+     * Keeps the local part of a merged response, without the ETag of this shard alone.
+     */
+    private static final class LocalResponse extends ContentCachingResponseWrapper {
+
+        LocalResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (!HttpHeaders.ETAG.equalsIgnoreCase(name)) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (!HttpHeaders.ETAG.equalsIgnoreCase(name)) {
+                super.addHeader(name, value);
+            }
+        }
+    }
+}
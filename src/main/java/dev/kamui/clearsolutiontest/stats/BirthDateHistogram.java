@@ -0,0 +1,45 @@
+package dev.kamui.clearsolutiontest.stats;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts of users per birth day in a Fenwick tree, so that the number of users born up to a day
+ * takes a logarithmic number of reads. Days outside of the covered range count as its first or last day.
+ * Counts are atomic, so concurrent writers need no lock and a reader never blocks them.
+ */
+final class BirthDateHistogram {
+
+    static final LocalDate FIRST_DAY = LocalDate.of(1850, 1, 1);
+    static final LocalDate LAST_DAY = LocalDate.of(2149, 12, 31);
+
+    private static final long FIRST_EPOCH_DAY = FIRST_DAY.toEpochDay();
+    private static final int DAYS = (int) (LAST_DAY.toEpochDay() - FIRST_EPOCH_DAY + 1);
+
+    // 1-based, node i holds the count of the (i & -i) days ending with day i
+    private final AtomicLongArray tree = new AtomicLongArray(DAYS + 1);
+
+    void add(LocalDate birthDate, long delta) {
+        for (int i = index(birthDate) + 1; i <= DAYS; i += i & -i) {
+            tree.addAndGet(i, delta);
+        }
+    }
+
+    /**
+     * @return the number of users born on {@code day} or before
+     */
+    long countUpTo(LocalDate day) {
+        if (day.isBefore(FIRST_DAY)) {
+            return 0;
+        }
+        long count = 0;
+        for (int i = index(day) + 1; i > 0; i -= i & -i) {
+            count += tree.get(i);
+        }
+        return count;
+    }
+
+    private static int index(LocalDate day) {
+        return (int) Math.max(0, Math.min(DAYS - 1, day.toEpochDay() - FIRST_EPOCH_DAY));
+    }
+}
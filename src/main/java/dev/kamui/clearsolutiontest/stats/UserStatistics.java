@@ -0,0 +1,148 @@
+package dev.kamui.clearsolutiontest.stats;
+
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.UserStoreListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps counts of users per birth day and per country up to date with store events, so that {@link #stats()}
+ * reads a few hundred counters instead of scanning the store. Birth years and age bands are ranges of days,
+ * read as differences of prefix sums of the {@link BirthDateHistogram}. Ages are counted in whole years,
+ * like the {@code min.age} check of requests.
+ * <p>
+ * The counts are built from a store snapshot by the first request, so writes pay nothing for them until then.
+ * Unlike index entries counts aren't idempotent: the listener is added together with the snapshot, so it
+ * gets exactly the writes the snapshot doesn't hold. The counts of different buckets are read
+ * one after the other and may be a concurrent write apart.
+ */
+@Component
+public class UserStatistics implements UserStoreListener {
+
+    private final UserStore store;
+    private final Clock clock;
+    private final int minAge;
+    private final int ageBandWidth;
+    private final int ageBands;
+
+    private final BirthDateHistogram birthDates = new BirthDateHistogram();
+    private final ConcurrentMap<String, LongAdder> countries = new ConcurrentHashMap<>();
+    private volatile boolean built;
+
+    @Autowired
+    public UserStatistics(UserStore store,
+                          @Value("${min.age}") int minAge,
+                          @Value("${user.stats.age-band-width:10}") int ageBandWidth,
+                          @Value("${user.stats.age-bands:6}") int ageBands) {
+        this(store, Clock.systemDefaultZone(), minAge, ageBandWidth, ageBands);
+    }
+
+    UserStatistics(UserStore store, Clock clock, int minAge, int ageBandWidth, int ageBands) {
+        if (ageBandWidth < 1 || ageBands < 1) {
+            throw new IllegalArgumentException("Age bands must be at least one and one year wide");
+        }
+        this.store = store;
+        this.clock = clock;
+        this.minAge = minAge;
+        this.ageBandWidth = ageBandWidth;
+        this.ageBands = ageBands;
+    }
+
+    public UserStats stats() {
+        build();
+        LocalDate today = LocalDate.now(clock);
+
+        Map<String, Long> byAgeBand = new LinkedHashMap<>();
+        if (minAge > 0) {
+            putCount(byAgeBand, "0-" + (minAge - 1), bornBetweenAges(today, 0, minAge));
+        }
+        for (int band = 0; band < ageBands; band++) {
+            int from = minAge + band * ageBandWidth;
+            if (band == ageBands - 1) {
+                putCount(byAgeBand, from + "+", birthDates.countUpTo(bornBy(today, from)));
+            } else {
+                putCount(byAgeBand, from + "-" + (from + ageBandWidth - 1), bornBetweenAges(today, from, from + ageBandWidth));
+            }
+        }
+
+        Map<Integer, Long> byBirthYear = new TreeMap<>();
+        long bornBefore = 0;
+        for (int year = BirthDateHistogram.FIRST_DAY.getYear(); year <= BirthDateHistogram.LAST_DAY.getYear(); year++) {
+            long bornUpTo = birthDates.countUpTo(LocalDate.of(year, 12, 31));
+            putCount(byBirthYear, year, bornUpTo - bornBefore);
+            bornBefore = bornUpTo;
+        }
+
+        Map<String, Long> byCountry = new TreeMap<>();
+        countries.forEach((country, count) -> putCount(byCountry, country, count.sum()));
+        return new UserStats(bornBefore, byAgeBand, byBirthYear, byCountry);
+    }
+
+    @Override
+    public void onCreated(User user, long version) {
+        count(user, 1);
+    }
+
+    @Override
+    public void onUpdated(User previous, User updated, long version) {
+        count(previous, -1);
+        count(updated, 1);
+    }
+
+    @Override
+    public void onDeleted(User deleted, long version) {
+        count(deleted, -1);
+    }
+
+    /**
+     * Counts the store on first use. Events of later writes are counted as they come, also while the
+     * snapshot is being counted, as additions of counts commute.
+     */
+    private synchronized void build() {
+        if (built) {
+            return;
+        }
+        try (UserStore.Snapshot snapshot = store.openSnapshot(this)) {
+            snapshot.forEach((user, version) -> count(user, 1));
+        }
+        built = true;
+    }
+
+    private void count(User user, long delta) {
+        birthDates.add(user.getBirthDate(), delta);
+        if (user.getAddress() != null && user.getAddress().country() != null) {
+            countries.computeIfAbsent(user.getAddress().country(), country -> new LongAdder()).add(delta);
+        }
+    }
+
+    private long bornBetweenAges(LocalDate today, int fromAge, int toAge) {
+        return birthDates.countUpTo(bornBy(today, fromAge)) - birthDates.countUpTo(bornBy(today, toAge));
+    }
+
+    /**
+     * @return the last birth date of users that are at least {@code age} years old
+     */
+    private static LocalDate bornBy(LocalDate today, int age) {
+        LocalDate day = today.minusYears(age);
+        // someone born on February 29 turns a year older on February 28 in years without it
+        LocalDate next = day.plusDays(1);
+        return next.plusYears(age).isAfter(today) ? day : next;
+    }
+
+    private static <K> void putCount(Map<K, Long> counts, K key, long count) {
+        if (count != 0) {
+            counts.put(key, count);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package dev.kamui.clearsolutiontest.stats;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Numbers of users in total, per birth year, per age band and per country, leaving out empty buckets.
+ * Age bands are named by the ages they hold, like {@code 18-27}, the last one is open, like {@code 68+}.
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record UserStats(long total, Map<String, Long> byAgeBand, Map<Integer, Long> byBirthYear,
+                        Map<String, Long> byCountry) {
+
+    /**
+     * @return the counts of both, as for the users of two shards with the same age bands
+     */
+    public UserStats plus(UserStats other) {
+        return new UserStats(total + other.total,
+                sum(new LinkedHashMap<>(byAgeBand), other.byAgeBand),
+                sum(new TreeMap<>(byBirthYear), other.byBirthYear),
+                sum(new TreeMap<>(byCountry), other.byCountry));
+    }
+
+    private static <K> Map<K, Long> sum(Map<K, Long> counts, Map<K, Long> other) {
+        other.forEach((key, count) -> counts.merge(key, count, Long::sum));
+        return counts;
+    }
+}
@@ -0,0 +1,28 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.model.User;
+
+import java.time.LocalDate;
+
+/**
+ * Entry of the birth date index: users are ordered by birth date, then by id.
+ */
+public record BirthDateKey(long epochDay, long id) implements Comparable<BirthDateKey> {
+
+    public static BirthDateKey of(User user) {
+        return new BirthDateKey(user.getBirthDate().toEpochDay(), user.getId());
+    }
+
+    /**
+     * @return the key that sorts before every user born on {@code date}
+     */
+    public static BirthDateKey lowest(LocalDate date) {
+        return new BirthDateKey(date.toEpochDay(), Long.MIN_VALUE);
+    }
+
+    @Override
+    public int compareTo(BirthDateKey o) {
+        int cmp = Long.compare(epochDay, o.epochDay);
+        return cmp != 0 ? cmp : Long.compare(id, o.id);
+    }
+}
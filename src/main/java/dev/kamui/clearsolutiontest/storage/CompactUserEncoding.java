@@ -0,0 +1,201 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps each user as one small object with primitive fields and a single UTF-8 byte array,
+ * instead of a {@link User} with a {@link LocalDate}, an {@link Address} and up to nine Strings.
+ * The birth date is kept as an epoch day, country, city and state are dictionary-encoded since
+ * they repeat across users, and the remaining strings are packed into one length-prefixed byte array.
+ * A {@link User} is only built when a stored user is read.
+ */
+public class CompactUserEncoding implements UserEncoding {
+
+    private static final int NULL_CODE = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final Dictionary countries = new Dictionary();
+    private final Dictionary cities = new Dictionary();
+    private final Dictionary states = new Dictionary();
+
+    @Override
+    public EncodedUser encode(User user) {
+        Address address = user.getAddress();
+        byte[] strings = pack(user.getFirstName(), user.getLastName(), user.getEmail(), user.getPhoneNumber(),
+                address == null ? null : address.zip(), address == null ? null : address.street());
+        return new CompactUser(user.getId(),
+                user.getBirthDate() == null ? NO_DATE : Math.toIntExact(user.getBirthDate().toEpochDay()),
+                address != null,
+                address == null ? NULL_CODE : countries.code(address.country()),
+                address == null ? NULL_CODE : cities.code(address.city()),
+                address == null ? NULL_CODE : states.code(address.state()),
+                strings);
+    }
+
+    private final class CompactUser implements EncodedUser {
+
+        private static final int EMAIL = 2;
+
+        private final long id;
+        private final int birthEpochDay;
+        private final boolean hasAddress;
+        private final int country;
+        private final int city;
+        private final int state;
+        private final byte[] strings;
+
+        private CompactUser(long id, int birthEpochDay, boolean hasAddress, int country, int city, int state, byte[] strings) {
+            this.id = id;
+            this.birthEpochDay = birthEpochDay;
+            this.hasAddress = hasAddress;
+            this.country = country;
+            this.city = city;
+            this.state = state;
+            this.strings = strings;
+        }
+
+        @Override
+        public User decode() {
+            String[] values = unpack(strings, 6);
+            User.UserBuilder user = User.builder()
+                    .id(id)
+                    .firstName(values[0])
+                    .lastName(values[1])
+                    .email(values[EMAIL])
+                    .phoneNumber(values[3])
+                    .birthDate(birthEpochDay == NO_DATE ? null : LocalDate.ofEpochDay(birthEpochDay));
+            if (hasAddress) {
+                user.address(new Address(countries.value(country), cities.value(city), states.value(state),
+                        values[4], values[5]));
+            }
+            return user.build();
+        }
+
+        @Override
+        public String email() {
+            return unpack(strings, EMAIL + 1)[EMAIL];
+        }
+
+        @Override
+        public long birthEpochDay() {
+            return birthEpochDay;
+        }
+    }
+
+    /**
+     * Packs strings as {@code [varint length + 1][bytes]}, with a zero length for {@code null}.
+     */
+    private static byte[] pack(String... values) {
+        byte[][] encoded = new byte[values.length][];
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+                size += encoded[i].length;
+            }
+            size += varIntSize(encoded[i] == null ? 0 : encoded[i].length + 1);
+        }
+        byte[] packed = new byte[size];
+        int position = 0;
+        for (byte[] value : encoded) {
+            position = putVarInt(packed, position, value == null ? 0 : value.length + 1);
+            if (value != null) {
+                System.arraycopy(value, 0, packed, position, value.length);
+                position += value.length;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * @return the first {@code count} strings packed by {@link #pack(String...)}
+     */
+    private static String[] unpack(byte[] packed, int count) {
+        String[] values = new String[count];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            int header = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = packed[position++];
+                header |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (header > 0) {
+                values[i] = new String(packed, position, header - 1, StandardCharsets.UTF_8);
+                position += header - 1;
+            }
+        }
+        return values;
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int putVarInt(byte[] target, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Append-only mapping between repeated strings and small int codes.
+     */
+    private static final class Dictionary {
+
+        private final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile String[] values = new String[16];
+        private int size;
+
+        int code(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            Integer code = codes.get(value);
+            return code != null ? code : add(value);
+        }
+
+        String value(int code) {
+            return code == NULL_CODE ? null : values[code];
+        }
+
+        private int add(String value) {
+            lock.lock();
+            try {
+                Integer code = codes.get(value);
+                if (code != null) {
+                    return code;
+                }
+                String[] current = values;
+                if (size == current.length) {
+                    current = Arrays.copyOf(current, size * 2);
+                }
+                current[size] = value;
+                // publish the value before its code, so readers of the code always find it
+                values = current;
+                codes.put(value, size);
+                return size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
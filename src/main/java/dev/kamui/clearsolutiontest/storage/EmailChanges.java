@@ -0,0 +1,83 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The email changes of a batch of updates, checked against the email index and the earlier changes
+ * of the batch and only applied to the index once the whole batch is accepted. The users of the batch must be
+ * locked, so that only creations of other users can change the index in between.
+ */
+final class EmailChanges {
+
+    private final ConcurrentMap<String, Long> idsByEmail;
+    // emails taken by users of the batch, with the update that took them
+    private final Map<String, Claim> claimed = new LinkedHashMap<>();
+    // emails given up by users of the batch
+    private final Map<String, Long> released = new HashMap<>();
+
+    EmailChanges(ConcurrentMap<String, Long> idsByEmail) {
+        this.idsByEmail = idsByEmail;
+    }
+
+    /**
+     * @return {@code false} if {@code newEmail} belongs to another user, as of the earlier changes of the batch
+     */
+    boolean change(long id, String oldEmail, String newEmail, int update) {
+        Claim claim = claimed.get(newEmail);
+        Long owner;
+        if (claim != null) {
+            owner = claim.id;
+        } else {
+            owner = released.containsKey(newEmail) ? null : idsByEmail.get(newEmail);
+        }
+        if (owner != null && owner != id) {
+            return false;
+        }
+        Claim own = claimed.get(oldEmail);
+        if (own != null && own.id == id) {
+            claimed.remove(oldEmail);
+        } else {
+            released.put(oldEmail, id);
+        }
+        if (!released.remove(newEmail, id)) {
+            claimed.put(newEmail, new Claim(id, update));
+        }
+        return true;
+    }
+
+    /**
+     * Applies the changes to the email index, or none of them if a user created meanwhile took one of the emails.
+     *
+     * @return -1, or the update whose email was taken
+     */
+    int apply() {
+        List<Runnable> undo = new ArrayList<>();
+        for (Map.Entry<String, Claim> entry : claimed.entrySet()) {
+            String email = entry.getKey();
+            long id = entry.getValue().id;
+            Long previousOwner = released.remove(email);
+            boolean taken = previousOwner != null
+                    ? idsByEmail.replace(email, previousOwner, id)
+                    : idsByEmail.putIfAbsent(email, id) == null;
+            if (!taken) {
+                for (int i = undo.size() - 1; i >= 0; i--) {
+                    undo.get(i).run();
+                }
+                return entry.getValue().update;
+            }
+            undo.add(previousOwner != null
+                    ? () -> idsByEmail.replace(email, id, previousOwner)
+                    : () -> idsByEmail.remove(email, id));
+        }
+        released.forEach(idsByEmail::remove);
+        return -1;
+    }
+
+    private record Claim(long id, int update) {
+    }
+}
@@ -0,0 +1,16 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.model.User;
+
+/**
+ * In-memory form of a stored user, produced by a {@link UserEncoding}.
+ * Only the fields the storage indexes on can be read without decoding the whole user.
+ */
+public interface EncodedUser {
+
+    User decode();
+
+    String email();
+
+    long birthEpochDay();
+}
@@ -0,0 +1,32 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.model.User;
+
+/**
+ * Keeps the {@link User} objects themselves. Cheapest to read, most expensive in heap.
+ */
+public class HeapUserEncoding implements UserEncoding {
+
+    @Override
+    public EncodedUser encode(User user) {
+        return new HeapUser(user);
+    }
+
+    private record HeapUser(User user) implements EncodedUser {
+
+        @Override
+        public User decode() {
+            return user;
+        }
+
+        @Override
+        public String email() {
+            return user.getEmail();
+        }
+
+        @Override
+        public long birthEpochDay() {
+            return user.getBirthDate().toEpochDay();
+        }
+    }
+}
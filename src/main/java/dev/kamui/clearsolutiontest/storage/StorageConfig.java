@@ -0,0 +1,26 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Chooses how users are kept in memory with {@code user.store.encoding}:
+ * {@code heap} (default) keeps {@code User} objects, {@code compact} trades some CPU on reads
+ * for a much smaller heap per user.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "user.store.encoding", havingValue = "heap", matchIfMissing = true)
+    public UserEncoding heapUserEncoding() {
+        return new HeapUserEncoding();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user.store.encoding", havingValue = "compact")
+    public UserEncoding compactUserEncoding() {
+        return new CompactUserEncoding();
+    }
+}
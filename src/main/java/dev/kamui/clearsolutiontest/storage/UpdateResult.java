@@ -0,0 +1,20 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.exception.DomainException;
+
+/**
+ * The outcome of one {@link UserUpdate} of a batch: the updated user, the reason it was refused,
+ * or neither when it was not applied because another update of an all-or-nothing batch was refused.
+ */
+public record UpdateResult(VersionedUser updated, DomainException error) {
+
+    static final UpdateResult NOT_APPLIED = new UpdateResult(null, null);
+
+    static UpdateResult updated(VersionedUser updated) {
+        return new UpdateResult(updated, null);
+    }
+
+    static UpdateResult refused(DomainException error) {
+        return new UpdateResult(null, error);
+    }
+}
@@ -0,0 +1,12 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.model.User;
+
+/**
+ * Decides how {@link UserStore} keeps users in memory. Encoded users must not change
+ * after they are created.
+ */
+public interface UserEncoding {
+
+    EncodedUser encode(User user);
+}
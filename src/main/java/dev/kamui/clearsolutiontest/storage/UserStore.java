@@ -0,0 +1,671 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.exception.DomainException;
+import dev.kamui.clearsolutiontest.exception.UserAlreadyExistException;
+import dev.kamui.clearsolutiontest.exception.UserNotFoundException;
+import dev.kamui.clearsolutiontest.exception.UserVersionConflictException;
+import dev.kamui.clearsolutiontest.model.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjLongConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe in-memory user storage.
+ * Users are kept in a primary index by id, a unique secondary index by email
+ * and a sorted index by birth date, so lookups, updates, deletes and birth date
+ * range queries don't need to scan the whole storage.
+ * Stored users are never mutated in place: every write stores a new {@link UserVersion},
+ * and older versions are kept only while a {@link Snapshot} is open.
+ * Users are kept in the form chosen by the {@link UserEncoding} and decoded when read.
+ * The sizes of the storage and its indexes are published as gauges, and lookups and
+ * collected range queries are timed.
+ */
+@Component
+public class UserStore {
+    /**
+     * Makes {@link #update(long, long, UnaryOperator)} skip the version check.
+     */
+    public static final long ANY_VERSION = -1;
+
+    private static final int LOCK_STRIPES = 256;
+
+    private final ConcurrentMap<Long, UserVersion> usersById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final NavigableSet<BirthDateKey> birthDateIndex = new ConcurrentSkipListSet<>();
+
+    private final AtomicLong version = new AtomicLong();
+    // advanced once a write is visible to readers, unlike version, which is taken before the write is applied
+    private final AtomicLong modificationVersion = new AtomicLong();
+    private final LongAdder size = new LongAdder();
+    private final Set<Snapshot> openSnapshots = ConcurrentHashMap.newKeySet();
+    // ids whose entries keep older versions or a deletion marker for open snapshots
+    private final Queue<Long> versionedIds = new ConcurrentLinkedQueue<>();
+    private final List<UserStoreListener> listeners = new CopyOnWriteArrayList<>();
+    // writers of the same user take the same lock. Unlike the monitor held by ConcurrentHashMap.compute,
+    // a virtual thread waiting for it unmounts from its carrier thread
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final UserEncoding encoding;
+
+    // entries of the birth date index, whose own size() walks the whole skip list
+    private final LongAdder birthDateIndexSize = new LongAdder();
+    private final Timer lookupTimer;
+    private final Timer rangeTimer;
+
+    public UserStore() {
+        this(new HeapUserEncoding());
+    }
+
+    public UserStore(UserEncoding encoding) {
+        this(encoding, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public UserStore(UserEncoding encoding, MeterRegistry meterRegistry) {
+        this.encoding = encoding;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        Gauge.builder("users.store.size", this, UserStore::size)
+                .description("Number of stored users")
+                .register(meterRegistry);
+        Gauge.builder("users.store.index.size", usersById, Map::size)
+                .description("Entries of a storage index, the id index includes deletion markers kept for snapshots")
+                .tag("index", "id")
+                .register(meterRegistry);
+        Gauge.builder("users.store.index.size", idsByEmail, Map::size)
+                .tag("index", "email")
+                .register(meterRegistry);
+        Gauge.builder("users.store.index.size", birthDateIndexSize, LongAdder::sum)
+                .tag("index", "birth_date")
+                .register(meterRegistry);
+        lookupTimer = Timer.builder("users.store.lookup")
+                .description("Lookups of a user by id")
+                .register(meterRegistry);
+        rangeTimer = Timer.builder("users.store.range")
+                .description("Collected birth date range queries")
+                .register(meterRegistry);
+    }
+
+    public void addListener(UserStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stores the user if no other user is registered with the same email.
+     *
+     * @return {@code true} if the user was stored, {@code false} if the email is already taken
+     * @throws IllegalStateException if a user with the same id is stored, which the id generator rules out
+     */
+    public boolean createIfEmailAbsent(User user) {
+        boolean created = create(user);
+        afterWrite();
+        return created;
+    }
+
+    /**
+     * Stores a batch of users, skipping those whose email is already taken,
+     * including by an earlier user of the same batch.
+     *
+     * @return for each user, whether it was stored
+     */
+    public boolean[] createAllIfEmailAbsent(List<User> users) {
+        boolean[] created = new boolean[users.size()];
+        try {
+            for (int i = 0; i < created.length; i++) {
+                created[i] = create(users.get(i));
+            }
+        } finally {
+            afterWrite();
+        }
+        return created;
+    }
+
+    /**
+     * @return the current user with its version, for a later {@link #update(long, long, UnaryOperator)}
+     */
+    public Optional<VersionedUser> findVersionedById(long id) {
+        long started = System.nanoTime();
+        UserVersion current = usersById.get(id);
+        Optional<VersionedUser> user = current == null || current.isDeleted()
+                ? Optional.empty()
+                : Optional.of(new VersionedUser(current.user(), current.version()));
+        lookupTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return user;
+    }
+
+    public Optional<User> findById(long id) {
+        long started = System.nanoTime();
+        UserVersion current = usersById.get(id);
+        Optional<User> user = current == null ? Optional.empty() : Optional.ofNullable(current.user());
+        lookupTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return user;
+    }
+
+    /**
+     * Atomically replaces the user with the result of {@code updater}.
+     * The updater must return a new instance instead of modifying the stored one.
+     *
+     * @return the updated user, or empty if there is no user with this id
+     * @throws UserAlreadyExistException if the new email belongs to another user
+     */
+    public Optional<User> update(long id, UnaryOperator<User> updater) {
+        return update(id, ANY_VERSION, updater).map(VersionedUser::user);
+    }
+
+    /**
+     * Like {@link #update(long, UnaryOperator)}, but only if the user is still at {@code expectedVersion},
+     * or at any version when it is {@link #ANY_VERSION}.
+     *
+     * @return the updated user with its new version, or empty if there is no user with this id
+     * @throws UserVersionConflictException if the user was changed since {@code expectedVersion}
+     * @throws UserAlreadyExistException if the new email belongs to another user
+     */
+    public Optional<VersionedUser> update(long id, long expectedVersion, UnaryOperator<User> updater) {
+        Optional<VersionedUser> updated = apply(id, expectedVersion, updater);
+        afterWrite();
+        return updated;
+    }
+
+    /**
+     * Applies every update on its own, like {@link #update(long, UnaryOperator)}, and in their order,
+     * so a refused update doesn't keep the others from being applied.
+     *
+     * @return the result of every update
+     */
+    public List<UpdateResult> updateEach(List<UserUpdate> updates) {
+        List<UpdateResult> results = new ArrayList<>(updates.size());
+        for (UserUpdate update : updates) {
+            try {
+                results.add(apply(update.id(), ANY_VERSION, update.updater())
+                        .map(UpdateResult::updated)
+                        .orElseGet(() -> UpdateResult.refused(new UserNotFoundException("User with id not found"))));
+            } catch (UserAlreadyExistException e) {
+                results.add(UpdateResult.refused(e));
+            }
+        }
+        afterWrite();
+        return results;
+    }
+
+    /**
+     * Applies all updates as if one after the other, or none of them if any is refused. Snapshots see either
+     * all of them or none, while readers of single users don't wait for them and may see one user updated
+     * before another. Several updates of the same user are stored as one new version.
+     *
+     * @return the updated users, or the refused update with all others {@link UpdateResult#NOT_APPLIED}
+     */
+    public List<UpdateResult> updateAllOrNone(List<UserUpdate> updates) {
+        Map<Long, UserVersion> currents = new HashMap<>();
+        Map<Long, User> updatedUsers = new LinkedHashMap<>();
+        Map<Long, VersionedUser> stored = new LinkedHashMap<>();
+        int[] stripes = updates.stream()
+                .mapToInt(update -> stripeOf(update.id()))
+                .distinct()
+                .sorted()
+                .toArray();
+        // in the order of openSnapshot(), so neither waits for the other forever
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        try {
+            EmailChanges emailChanges = new EmailChanges(idsByEmail);
+            for (int i = 0; i < updates.size(); i++) {
+                long id = updates.get(i).id();
+                User user = updatedUsers.get(id);
+                if (user == null) {
+                    UserVersion current = usersById.get(id);
+                    if (current == null || current.isDeleted()) {
+                        return refused(updates.size(), i, new UserNotFoundException("User with id not found"));
+                    }
+                    currents.put(id, current);
+                    user = current.user();
+                }
+                User updated = updates.get(i).updater().apply(user);
+                if (!Objects.equals(user.getEmail(), updated.getEmail())
+                        && !emailChanges.change(id, user.getEmail(), updated.getEmail(), i)) {
+                    return refused(updates.size(), i, new UserAlreadyExistException("User with this email is already exist"));
+                }
+                updatedUsers.put(id, updated);
+            }
+            int taken = emailChanges.apply();
+            if (taken >= 0) {
+                return refused(updates.size(), taken, new UserAlreadyExistException("User with this email is already exist"));
+            }
+            updatedUsers.forEach((id, updated) -> {
+                UserVersion current = currents.get(id);
+                User user = current.user();
+                if (!Objects.equals(user.getBirthDate(), updated.getBirthDate())) {
+                    addBirthDate(BirthDateKey.of(updated));
+                    removeBirthDate(BirthDateKey.of(user));
+                }
+                UserVersion next = nextVersion(id, encoding.encode(updated), current);
+                usersById.put(id, next);
+                stored.put(id, new VersionedUser(updated, next.version()));
+            });
+            stored.forEach((id, updated) -> changed(currents.get(id).user(), updated.user(), updated.version()));
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+        afterWrite();
+        List<UpdateResult> results = new ArrayList<>(updates.size());
+        for (UserUpdate update : updates) {
+            results.add(UpdateResult.updated(stored.get(update.id())));
+        }
+        return results;
+    }
+
+    private Optional<VersionedUser> apply(long id, long expectedVersion, UnaryOperator<User> updater) {
+        User user;
+        User updated;
+        UserVersion next;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            UserVersion current = usersById.get(id);
+            if (current == null || current.isDeleted()) {
+                return Optional.empty();
+            }
+            if (expectedVersion != ANY_VERSION && current.version() != expectedVersion) {
+                throw new UserVersionConflictException("User was modified since version " + expectedVersion);
+            }
+            user = current.user();
+            updated = updater.apply(user);
+            if (!Objects.equals(user.getEmail(), updated.getEmail())) {
+                if (idsByEmail.putIfAbsent(updated.getEmail(), id) != null) {
+                    throw new UserAlreadyExistException("User with this email is already exist");
+                }
+                idsByEmail.remove(user.getEmail(), id);
+            }
+            if (!Objects.equals(user.getBirthDate(), updated.getBirthDate())) {
+                addBirthDate(BirthDateKey.of(updated));
+                removeBirthDate(BirthDateKey.of(user));
+            }
+            next = nextVersion(id, encoding.encode(updated), current);
+            usersById.put(id, next);
+            changed(user, updated, next.version());
+        } finally {
+            lock.unlock();
+        }
+        return Optional.of(new VersionedUser(updated, next.version()));
+    }
+
+    /**
+     * @return the removed user, or empty if there is no user with this id
+     */
+    public Optional<User> delete(long id) {
+        User user;
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            UserVersion removed = usersById.get(id);
+            if (removed == null || removed.isDeleted()) {
+                return Optional.empty();
+            }
+            UserVersion next = nextVersion(id, null, removed);
+            // the deletion marker is only needed while a snapshot can still see the user
+            if (next.previous() == null) {
+                usersById.remove(id);
+            } else {
+                usersById.put(id, next);
+            }
+            user = removed.user();
+            size.decrement();
+            idsByEmail.remove(user.getEmail(), id);
+            removeBirthDate(BirthDateKey.of(user));
+            for (UserStoreListener listener : listeners) {
+                listener.onDeleted(user, next.version());
+            }
+        } finally {
+            lock.unlock();
+        }
+        afterWrite();
+        return Optional.of(user);
+    }
+
+    /**
+     * Puts back a user recovered from persistent storage, unless a newer version of it is already stored.
+     * Bypasses listeners and must only be used before the storage is in use.
+     * Users with different ids may be restored concurrently.
+     */
+    public void restore(User user, long userVersion) {
+        UserVersion restored = new UserVersion(encoding.encode(user), userVersion, null);
+        UserVersion current = usersById.putIfAbsent(user.getId(), restored);
+        if (current != null) {
+            if (current.version() >= userVersion) {
+                return;
+            }
+            unindex(user.getId(), current.encoded());
+            usersById.put(user.getId(), restored);
+        } else {
+            size.increment();
+        }
+        idsByEmail.put(user.getEmail(), user.getId());
+        addBirthDate(BirthDateKey.of(user));
+        version.accumulateAndGet(userVersion, Math::max);
+        modificationVersion.incrementAndGet();
+    }
+
+    /**
+     * Removes a user deleted at {@code userVersion} during recovery, unless a newer version of it is stored.
+     * Bypasses listeners and must only be used before the storage is in use.
+     */
+    public void restoreDeletion(long id, long userVersion) {
+        UserVersion current = usersById.get(id);
+        if (current != null && current.version() < userVersion) {
+            usersById.remove(id);
+            size.decrement();
+            unindex(id, current.encoded());
+            modificationVersion.incrementAndGet();
+        }
+        version.accumulateAndGet(userVersion, Math::max);
+    }
+
+    /**
+     * @return the version of the latest write
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Returns a number that grows after every write, once the write can be seen by readers.
+     * A result read after this method returned {@code v} includes every write made up to {@code v},
+     * so while it still returns {@code v} the result can't have changed.
+     */
+    public long modificationVersion() {
+        return modificationVersion.get();
+    }
+
+    public boolean existsByEmail(String email) {
+        return idsByEmail.containsKey(email);
+    }
+
+    public Stream<User> findByBirthDateBetween(LocalDate from, LocalDate to) {
+        return findByBirthDateBetween(from, to, null);
+    }
+
+    /**
+     * Returns users born strictly after {@code from} and strictly before {@code to},
+     * ordered by birth date and id, skipping every user up to and including {@code after}
+     * so a range can be read page by page.
+     * Costs O(log n) to locate the range plus O(1) per returned user.
+     */
+    public Stream<User> findByBirthDateBetween(LocalDate from, LocalDate to, BirthDateKey after) {
+        if (!from.isBefore(to)) {
+            return Stream.empty();
+        }
+        BirthDateKey lower = BirthDateKey.lowest(from.plusDays(1));
+        boolean lowerInclusive = true;
+        if (after != null && after.compareTo(lower) >= 0) {
+            lower = after;
+            lowerInclusive = false;
+        }
+        BirthDateKey upper = BirthDateKey.lowest(to);
+        if (lower.compareTo(upper) >= 0) {
+            return Stream.empty();
+        }
+        return birthDateIndex.subSet(lower, lowerInclusive, upper, false).stream()
+                .map(this::resolve)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Collects at most {@code limit} users of {@link #findByBirthDateBetween(LocalDate, LocalDate, BirthDateKey)}.
+     */
+    public List<User> findByBirthDateBetween(LocalDate from, LocalDate to, BirthDateKey after, long limit) {
+        long started = System.nanoTime();
+        List<User> users = findByBirthDateBetween(from, to, after).limit(limit).toList();
+        rangeTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return users;
+    }
+
+    public Stream<User> findAll() {
+        return usersById.values().stream()
+                .map(UserVersion::user)
+                .filter(Objects::nonNull);
+    }
+
+    public int size() {
+        return size.intValue();
+    }
+
+    /**
+     * Opens a point-in-time view of all users. Writers are not blocked while it is open:
+     * they keep the states the snapshot still needs next to the current ones.
+     * The snapshot holds exactly the writes with versions up to its {@link Snapshot#version()}.
+     * The snapshot must be closed so those older states can be released.
+     */
+    public Snapshot openSnapshot() {
+        return openSnapshot(null);
+    }
+
+    /**
+     * Opens a snapshot like {@link #openSnapshot()} and adds the listener at the same point in time,
+     * so the listener gets exactly the writes the snapshot does not hold.
+     */
+    public Snapshot openSnapshot(UserStoreListener listener) {
+        Snapshot snapshot = new Snapshot();
+        // registered before its version is read, so every later write sees it and keeps history
+        openSnapshots.add(snapshot);
+        // writers take a version and apply it under the lock of their stripe, so with all stripes held
+        // no write is half done and every version up to the one read is already applied
+        int locked = 0;
+        try {
+            for (; locked < LOCK_STRIPES; locked++) {
+                locks[locked].lock();
+            }
+            snapshot.version = version.get();
+            if (listener != null) {
+                // writers report their changes under their stripe lock, so none is reported half before
+                addListener(listener);
+            }
+        } finally {
+            while (locked > 0) {
+                locks[--locked].unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    private boolean create(User user) {
+        if (idsByEmail.putIfAbsent(user.getEmail(), user.getId()) != null) {
+            return false;
+        }
+        long userVersion;
+        ReentrantLock lock = lockFor(user.getId());
+        lock.lock();
+        try {
+            userVersion = version.incrementAndGet();
+            if (usersById.putIfAbsent(user.getId(), new UserVersion(encoding.encode(user), userVersion, null)) != null) {
+                idsByEmail.remove(user.getEmail(), user.getId());
+                throw new IllegalStateException("User id " + user.getId() + " is already taken");
+            }
+            size.increment();
+            addBirthDate(BirthDateKey.of(user));
+            for (UserStoreListener listener : listeners) {
+                listener.onCreated(user, userVersion);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private void changed(User previous, User updated, long userVersion) {
+        for (UserStoreListener listener : listeners) {
+            listener.onUpdated(previous, updated, userVersion);
+        }
+    }
+
+    private ReentrantLock lockFor(long id) {
+        return locks[stripeOf(id)];
+    }
+
+    private static int stripeOf(long id) {
+        return Long.hashCode(id) & (LOCK_STRIPES - 1);
+    }
+
+    private static List<UpdateResult> refused(int updates, int refused, DomainException error) {
+        List<UpdateResult> results = new ArrayList<>(Collections.nCopies(updates, UpdateResult.NOT_APPLIED));
+        results.set(refused, UpdateResult.refused(error));
+        return results;
+    }
+
+    private void afterWrite() {
+        modificationVersion.incrementAndGet();
+        for (UserStoreListener listener : listeners) {
+            listener.afterWrite();
+        }
+    }
+
+    private void unindex(long id, EncodedUser user) {
+        idsByEmail.remove(user.email(), id);
+        removeBirthDate(new BirthDateKey(user.birthEpochDay(), id));
+    }
+
+    private void addBirthDate(BirthDateKey key) {
+        if (birthDateIndex.add(key)) {
+            birthDateIndexSize.increment();
+        }
+    }
+
+    private void removeBirthDate(BirthDateKey key) {
+        if (birthDateIndex.remove(key)) {
+            birthDateIndexSize.decrement();
+        }
+    }
+
+    private UserVersion nextVersion(long id, EncodedUser user, UserVersion current) {
+        long next = version.incrementAndGet();
+        if (openSnapshots.isEmpty()) {
+            return new UserVersion(user, next, null);
+        }
+        versionedIds.add(id);
+        return new UserVersion(user, next, current);
+    }
+
+    /**
+     * Drops older states that no open snapshot can see any more.
+     * Snapshots opened after this point read a version at least as new as {@code current},
+     * so they never need the history of entries written up to it.
+     */
+    private void releaseVersions() {
+        long current = version.get();
+        long oldestSnapshot = openSnapshots.stream()
+                .mapToLong(snapshot -> snapshot.version)
+                .reduce(current, Math::min);
+        List<Long> retained = new ArrayList<>();
+        for (Long id = versionedIds.poll(); id != null; id = versionedIds.poll()) {
+            ReentrantLock lock = lockFor(id);
+            lock.lock();
+            try {
+                UserVersion value = usersById.get(id);
+                if (value == null) {
+                    continue;
+                }
+                if (value.version() <= oldestSnapshot) {
+                    UserVersion released = value.withoutHistory();
+                    if (released == null) {
+                        usersById.remove(id);
+                    } else {
+                        usersById.put(id, released);
+                    }
+                } else if (value.previous() != null) {
+                    retained.add(id);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        versionedIds.addAll(retained);
+    }
+
+    /**
+     * Resolves an index entry to the current user, skipping entries that are
+     * left behind by a concurrent update or delete.
+     */
+    private User resolve(BirthDateKey key) {
+        UserVersion current = usersById.get(key.id());
+        if (current == null || current.isDeleted() || current.encoded().birthEpochDay() != key.epochDay()) {
+            return null;
+        }
+        return current.user();
+    }
+
+    public final class Snapshot implements AutoCloseable {
+
+        // until the version is known the snapshot holds back the release of every older state
+        private volatile long version = Long.MIN_VALUE;
+
+        private Snapshot() {
+        }
+
+        /**
+         * Streams the users as they were when the snapshot was opened, in no particular order.
+         */
+        public Stream<User> stream() {
+            long snapshotVersion = version;
+            return usersById.values().stream()
+                    .map(userVersion -> userVersion.asOf(snapshotVersion))
+                    .filter(Objects::nonNull)
+                    .map(UserVersion::user);
+        }
+
+        /**
+         * Passes every user of the snapshot together with the version that wrote it.
+         */
+        public void forEach(ObjLongConsumer<User> action) {
+            long snapshotVersion = version;
+            for (UserVersion userVersion : usersById.values()) {
+                UserVersion visible = userVersion.asOf(snapshotVersion);
+                if (visible != null) {
+                    action.accept(visible.user(), visible.version());
+                }
+            }
+        }
+
+        /**
+         * @return the storage version the snapshot was taken at
+         */
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public void close() {
+            if (openSnapshots.remove(this)) {
+                releaseVersions();
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.model.User;
+
+/**
+ * Receives every change made to {@link UserStore}, together with the storage version that made it.
+ * Changes are reported on the writing thread right after they become visible, while the user is still
+ * locked, so the changes of one user are reported in the order of their versions. Listeners must be quick
+ * and must not write to the store.
+ */
+public interface UserStoreListener {
+
+    default void onCreated(User user, long version) {
+    }
+
+    default void onUpdated(User previous, User updated, long version) {
+    }
+
+    default void onDeleted(User deleted, long version) {
+    }
+
+    /**
+     * Called once at the end of every storage operation, after all of its changes were reported.
+     */
+    default void afterWrite() {
+    }
+}
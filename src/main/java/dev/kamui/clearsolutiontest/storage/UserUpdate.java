@@ -0,0 +1,11 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.model.User;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * One update of a batch, replacing the user with {@code id} by the result of {@code updater}.
+ */
+public record UserUpdate(long id, UnaryOperator<User> updater) {
+}
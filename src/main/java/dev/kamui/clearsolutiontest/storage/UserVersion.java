@@ -0,0 +1,45 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.model.User;
+
+/**
+ * A stored state of a user, stamped with the storage version that wrote it.
+ * {@code encoded} is {@code null} when the user was deleted by that write.
+ * {@code previous} is only kept while an open snapshot may still need the older state.
+ */
+record UserVersion(EncodedUser encoded, long version, UserVersion previous) {
+
+    boolean isDeleted() {
+        return encoded == null;
+    }
+
+    /**
+     * @return the decoded user, or {@code null} if this version is a deletion
+     */
+    User user() {
+        return encoded == null ? null : encoded.decode();
+    }
+
+    /**
+     * @return the state of the user at storage version {@code snapshotVersion},
+     * or {@code null} if it didn't exist at that version
+     */
+    UserVersion asOf(long snapshotVersion) {
+        for (UserVersion candidate = this; candidate != null; candidate = candidate.previous) {
+            if (candidate.version <= snapshotVersion) {
+                return candidate.isDeleted() ? null : candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return this version without older states, or {@code null} if nothing is left to keep
+     */
+    UserVersion withoutHistory() {
+        if (isDeleted()) {
+            return null;
+        }
+        return previous == null ? this : new UserVersion(encoded, version, null);
+    }
+}
@@ -0,0 +1,9 @@
+package dev.kamui.clearsolutiontest.storage;
+
+import dev.kamui.clearsolutiontest.model.User;
+
+/**
+ * A user together with the storage version that wrote it, which changes on every update of the user.
+ */
+public record VersionedUser(User user, long version) {
+}
@@ -0,0 +1,25 @@
+package dev.kamui.clearsolutiontest.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The string is {@code null} or an e-mail address matching {@code [\w-.]+@([\w-]+\.)+[\w-]{2,4}}.
+ */
+@Documented
+@Constraint(validatedBy = EmailAddressValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EmailAddress {
+    String message() default "must be a valid e-mail address";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,52 @@
+package dev.kamui.clearsolutiontest.validation;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+/**
+ * Checks {@link EmailAddress} in one pass over the characters, without a regex or allocations.
+ * After the {@code @}, the pattern asks for dot-separated non-empty labels, at least two,
+ * the last of 2 to 4 characters.
+ */
+public class EmailAddressValidator implements ConstraintValidator<EmailAddress, String> {
+
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        return value == null || isEmailAddress(value);
+    }
+
+    public static boolean isEmailAddress(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        while (i < length && (isWordChar(value.charAt(i)) || value.charAt(i) == '.')) {
+            i++;
+        }
+        if (i == 0 || i == length || value.charAt(i) != '@') {
+            return false;
+        }
+        int labels = 0;
+        int labelLength = 0;
+        for (i++; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (labelLength == 0) {
+                    return false;
+                }
+                labels++;
+                labelLength = 0;
+            } else if (isWordChar(c)) {
+                labelLength++;
+            } else {
+                return false;
+            }
+        }
+        return labels > 0 && labelLength >= 2 && labelLength <= 4;
+    }
+
+    /**
+     * @return whether {@code c} is in {@code [\w-]}, where {@code \w} is {@code [a-zA-Z_0-9]}
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+}
@@ -0,0 +1,70 @@
+package dev.kamui.clearsolutiontest.validation;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+/**
+ * Checks {@link PhoneNumber} in one pass over the characters, without a regex or allocations.
+ * The optional parts of the pattern never match a digit, so taking each one when it's there
+ * decides the same as the regex would.
+ */
+public class PhoneNumberValidator implements ConstraintValidator<PhoneNumber, String> {
+
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        return value == null || isPhoneNumber(value);
+    }
+
+    public static boolean isPhoneNumber(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        if (i < length && value.charAt(i) == '+') {
+            i++;
+        }
+        if (i < length && value.charAt(i) == '(') {
+            i++;
+        }
+        i = digits(value, i, 3);
+        if (i < 0) {
+            return false;
+        }
+        if (i < length && value.charAt(i) == ')') {
+            i++;
+        }
+        if (i < length && isSeparator(value.charAt(i))) {
+            i++;
+        }
+        i = digits(value, i, 3);
+        if (i < 0) {
+            return false;
+        }
+        if (i < length && isSeparator(value.charAt(i))) {
+            i++;
+        }
+        int last = length - i;
+        return last >= 4 && last <= 6 && digits(value, i, last) == length;
+    }
+
+    /**
+     * @return the index after {@code count} digits from {@code from}, or -1 if they aren't all there
+     */
+    private static int digits(CharSequence value, int from, int count) {
+        if (from + count > value.length()) {
+            return -1;
+        }
+        for (int i = from; i < from + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return from + count;
+    }
+
+    /**
+     * @return whether {@code c} is in {@code [-\s.]}, where {@code \s} is {@code [ \t\n\x0B\f\r]}
+     */
+    private static boolean isSeparator(char c) {
+        return c == '-' || c == '.' || c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
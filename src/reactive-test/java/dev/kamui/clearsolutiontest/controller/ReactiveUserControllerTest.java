@@ -0,0 +1,251 @@
+package dev.kamui.clearsolutiontest.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import dev.kamui.clearsolutiontest.cache.UserRangeCache;
+import dev.kamui.clearsolutiontest.changes.UserChangeLog;
+import dev.kamui.clearsolutiontest.format.PayloadFormats;
+import dev.kamui.clearsolutiontest.format.ReactivePayloadFormatConfig;
+import dev.kamui.clearsolutiontest.id.IdGeneratorConfig;
+import dev.kamui.clearsolutiontest.search.UserSearchIndex;
+import dev.kamui.clearsolutiontest.stats.UserStatistics;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.StorageConfig;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.UserStoreListener;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WebFluxTest(ReactiveUserController.class)
+@Import({UserStore.class, StorageConfig.class, IdGeneratorConfig.class, SimpleMeterRegistry.class, UserRangeCache.class,
+        UserSearchIndex.class, UserChangeLog.class, UserStatistics.class, PayloadFormats.class,
+        ReactivePayloadFormatConfig.class, UserRequestParser.class})
+class ReactiveUserControllerTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private UserStore store;
+
+    @BeforeEach
+    public void init() {
+        client.post().uri("/api/v1/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {
+                             "first_name": "Frodo",
+                             "last_name": "Baggins",
+                             "email": "frodo@gmail.com",
+                             "birth_data": "2004-10-31"
+                         }
+                        """)
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldReturnUsersArrayWithValidBirthDate() {
+        client.get().uri("/api/v1/users?From=2003-01-01&To=2004-11-01")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("ETag")
+                .expectBody()
+                .jsonPath("$.code").isEqualTo(200)
+                .jsonPath("$.data[0].email").isEqualTo("frodo@gmail.com");
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldNegotiateSmileWithJsonAsDefault() throws Exception {
+        ObjectMapper smile = new SmileMapper();
+        client.post().uri("/api/v1/users")
+                .contentType(PayloadFormats.APPLICATION_SMILE)
+                .bodyValue(smile.writeValueAsBytes(Map.of(
+                        "first_name", "Samwise",
+                        "last_name", "Gamgee",
+                        "email", "sam@gmail.com",
+                        "birth_data", "2002-04-06",
+                        "address", Map.of("country", "Shire", "city", "Hobbiton"))))
+                .exchange()
+                .expectStatus().isCreated();
+
+        byte[] body = client.get().uri("/api/v1/users?From=2002-01-01&To=2004-11-01")
+                .accept(PayloadFormats.APPLICATION_SMILE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(PayloadFormats.APPLICATION_SMILE)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        JsonNode users = smile.readTree(body).path("data");
+        assertEquals(2, users.size());
+        assertEquals("Samwise", users.path(0).path("first_name").asText());
+        assertEquals("2002-04-06", users.path(0).path("birth_date").asText());
+        assertEquals("Hobbiton", users.path(0).path("address").path("city").asText());
+
+        client.get().uri("/api/v1/users?From=2002-01-01&To=2004-11-01")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.data[1].email").isEqualTo("frodo@gmail.com");
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldWriteOffTheEventLoop() {
+        List<String> writers = new CopyOnWriteArrayList<>();
+        store.addListener(new UserStoreListener() {
+            @Override
+            public void onDeleted(User deleted, long version) {
+                writers.add(Thread.currentThread().getName());
+            }
+        });
+        long id = store.findAll().findFirst().orElseThrow().getId();
+
+        client.delete().uri("/api/v1/users/{id}", id)
+                .exchange()
+                .expectStatus().isNoContent();
+
+        assertEquals(1, writers.size());
+        assertTrue(writers.get(0).startsWith("boundedElastic"), writers.get(0));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldStreamUsersAsNdjson() {
+        List<User> users = client.get().uri("/api/v1/users?From=2003-01-01&To=2004-11-01&stream=true")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(User.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(1, users.size());
+        assertEquals("frodo@gmail.com", users.get(0).getEmail());
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldMapErrorsLikeMvc() {
+        client.delete().uri("/api/v1/users/100")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.error_details.code").isEqualTo(404)
+                .jsonPath("$.error_details.message").isEqualTo("user not found");
+
+        client.post().uri("/api/v1/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"first_name": "Frodo", "last_name": "Baggins", "email": "frodo@", "birth_data": "2000-01-01"}
+                        """)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error_details.message").isEqualTo("must be a valid e-mail address");
+
+        client.get().uri("/api/v1/users?From=2003-01-01")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error_details.message").isEqualTo("missing params");
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldCreateUsersFromNdjsonAndReportEveryLine() {
+        String body = """
+                {"first_name": "Bilbo", "last_name": "Baggins", "email": "bilbo@gmail.com", "birth_data": "1990-01-01"}
+                not json
+                {"first_name": "Frodo", "last_name": "Baggins", "email": "frodo@gmail.com", "birth_data": "1990-01-01"}
+                """;
+
+        client.post().uri("/api/v1/users/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.results.length()").isEqualTo(3)
+                .jsonPath("$.results[0].code").isEqualTo(201)
+                .jsonPath("$.results[1].message").isEqualTo("malformed json")
+                .jsonPath("$.results[2].message").isEqualTo("user with this email is already registered")
+                .jsonPath("$.created").isEqualTo(1)
+                .jsonPath("$.failed").isEqualTo(2);
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldApplyBatchUpdatesEachOnItsOwnOrAllOrNothing() {
+        long id = store.findAll().findFirst().orElseThrow().getId();
+        String body = """
+                {"id": %d, "first_name": "Samwise"}
+                {"id": 1234567, "first_name": "Samwise"}
+                """.formatted(id);
+
+        client.patch().uri("/api/v1/users/batch?atomic=true")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.results[0].code").isEqualTo(424)
+                .jsonPath("$.results[1].message").isEqualTo("user not found")
+                .jsonPath("$.updated").isEqualTo(0);
+        assertEquals("Frodo", store.findById(id).orElseThrow().getFirstName());
+
+        client.patch().uri("/api/v1/users/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.results[0].code").isEqualTo(200)
+                .jsonPath("$.results[1].code").isEqualTo(404)
+                .jsonPath("$.updated").isEqualTo(1)
+                .jsonPath("$.failed").isEqualTo(1);
+        assertEquals("Samwise", store.findById(id).orElseThrow().getFirstName());
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldStreamChangesSinceSequence() {
+        List<ServerSentEvent<String>> events = client.get().uri("/api/v1/users/changes?since=0")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+                })
+                .getResponseBody()
+                .take(1)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals("1", events.get(0).id());
+        assertEquals("created", events.get(0).event());
+    }
+}
+
@@ -0,0 +1,53 @@
+package dev.kamui.clearsolutiontest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.MissingRequestValueException;
+
+/**
+ * Maps the WebFlux counterparts of the Spring MVC binding errors handled by {@link GlobalErrorHandler},
+ * which handles the application's own exceptions on both stacks.
+ */
+@RestControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveErrorHandler {
+    private static final Logger log = LoggerFactory.getLogger(ReactiveErrorHandler.class);
+
+    private final MeterRegistry meterRegistry;
+    private final ThrottledLogger errorLog;
+
+    public ReactiveErrorHandler(MeterRegistry meterRegistry,
+                                @Value("${user.errors.logs-per-second:10}") int logsPerSecond) {
+        this.meterRegistry = meterRegistry;
+        this.errorLog = new ThrottledLogger(log, logsPerSecond);
+    }
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    protected ResponseEntity<?> handleWebExchangeBindException(WebExchangeBindException e) {
+        count(e);
+        String errorMsg = e.getBindingResult().getAllErrors().get(0).getDefaultMessage();
+        errorLog.error("{}", errorMsg);
+        GlobalErrorHandler.ResponseApiError responseApiError = new GlobalErrorHandler.ResponseApiError(
+                new GlobalErrorHandler.ErrorDetails(400, errorMsg));
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(responseApiError);
+    }
+
+    @ExceptionHandler(MissingRequestValueException.class)
+    protected ResponseEntity<?> handleMissingRequestValueException(MissingRequestValueException e) {
+        count(e);
+        errorLog.error("{}", e.getMessage());
+        return GlobalErrorHandler.MISSING_PARAMS;
+    }
+
+    private void count(Exception e) {
+        meterRegistry.counter("users.errors", "exception", e.getClass().getSimpleName()).increment();
+    }
+}
@@ -0,0 +1,370 @@
+package dev.kamui.clearsolutiontest.controller;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import dev.kamui.clearsolutiontest.cache.UserRangeCache;
+import dev.kamui.clearsolutiontest.changes.UserChange;
+import dev.kamui.clearsolutiontest.changes.UserChangeLog;
+import dev.kamui.clearsolutiontest.controller.UserBatchUpdates.PatchResult;
+import dev.kamui.clearsolutiontest.controller.UserRequestParser.BulkPatch;
+import dev.kamui.clearsolutiontest.controller.UserRequestParser.BulkUser;
+import dev.kamui.clearsolutiontest.dto.*;
+import dev.kamui.clearsolutiontest.exception.UserAlreadyExistException;
+import dev.kamui.clearsolutiontest.exception.UserNotFoundException;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.search.UserSearch;
+import dev.kamui.clearsolutiontest.search.UserSearchIndex;
+import dev.kamui.clearsolutiontest.stats.UserStatistics;
+import dev.kamui.clearsolutiontest.storage.BirthDateKey;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.VersionedUser;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The user API on WebFlux, with the same routes and responses as {@link UserController},
+ * except that {@code stream=true} streams a plain {@code Flux<User>}: a JSON array,
+ * or one user per line when {@code application/x-ndjson} is accepted.
+ * Built with the {@code reactive} Maven profile.
+ * Point and range reads only look up concurrent maps and run on the event loop. Writes lock a store stripe
+ * and the search index, may wait for their sync when persisted, and searches and statistics lock the index
+ * or scan the store, so all of them run on the bounded elastic scheduler.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("api/v1/users")
+public class ReactiveUserController {
+
+    private static final int CHANGES_BATCH_SIZE = 1000;
+
+    private static final String RESYNC = "resync";
+
+    private final UserStore storage;
+
+    private final UserRangeCache rangeCache;
+
+    private final UserSearchIndex searchIndex;
+
+    private final UserStatistics statistics;
+
+    private final UserChangeLog changeLog;
+
+    private final Duration changesPollInterval;
+
+    private final UserRequestParser requestParser;
+
+    private final ObjectWriter bulkResultWriter;
+
+    private final ObjectWriter patchResultWriter;
+
+    private final int bulkBatchSize;
+
+    public ReactiveUserController(UserStore storage, UserRangeCache rangeCache, UserSearchIndex searchIndex,
+                                  UserStatistics statistics, UserChangeLog changeLog,
+                                  UserRequestParser requestParser, ObjectMapper objectMapper,
+                                  @Value("${user.bulk.batch-size:1000}") int bulkBatchSize,
+                                  @Value("${user.changes.poll-interval:100ms}") Duration changesPollInterval) {
+        this.storage = storage;
+        this.rangeCache = rangeCache;
+        this.searchIndex = searchIndex;
+        this.statistics = statistics;
+        this.changeLog = changeLog;
+        this.changesPollInterval = changesPollInterval;
+        this.requestParser = requestParser;
+        this.bulkResultWriter = objectMapper.writerFor(BulkResult.class);
+        this.patchResultWriter = objectMapper.writerFor(PatchResult.class);
+        this.bulkBatchSize = bulkBatchSize;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<UserDataResponse>> createUser(@Valid @RequestBody UserRequest request) {
+        User user = requestParser.newUser(request);
+        return blocking(() -> {
+            if (!storage.createIfEmailAbsent(user)) {
+                throw new UserAlreadyExistException("User with this email is already exist");
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(new UserDataResponse(HttpStatus.CREATED.value(), user));
+        });
+    }
+
+    /**
+     * Creates users from an NDJSON body in batches, writing the result of every line as soon as
+     * its batch is stored, in the same format as {@link UserController#createUsers}.
+     */
+    @PostMapping(path = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<DataBuffer>> createUsers(@RequestBody Flux<String> lines) {
+        AtomicLong created = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        Flux<String> results = lines.index()
+                .filter(line -> !line.getT2().isBlank())
+                .map(line -> requestParser.parse(Math.toIntExact(line.getT1() + 1), line.getT2()))
+                .buffer(bulkBatchSize)
+                .concatMap(batch -> blocking(() -> createUsers(batch)))
+                .flatMapIterable(batch -> batch)
+                .doOnNext(result -> (result.id() != null ? created : failed).incrementAndGet())
+                .index((index, result) -> (index == 0 ? "" : ",") + json(bulkResultWriter, result));
+        Flux<String> body = Flux.concat(
+                Mono.just("{\"code\":" + HttpStatus.OK.value() + ",\"results\":["),
+                results,
+                Mono.fromSupplier(() -> "],\"created\":" + created.get() + ",\"failed\":" + failed.get() + "}"));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body.map(text -> DefaultDataBufferFactory.sharedInstance.wrap(text.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Same as {@link UserController#updateUsers}, an all-or-nothing batch is collected before it is applied.
+     */
+    @PatchMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Flux<DataBuffer>>> updateUsers(
+            @RequestParam(name = "atomic", defaultValue = "false") boolean atomic, @RequestBody Flux<String> lines) {
+        Flux<BulkPatch> patches = lines.index()
+                .filter(line -> !line.getT2().isBlank())
+                .map(line -> requestParser.parsePatch(Math.toIntExact(line.getT1() + 1), line.getT2()));
+        if (atomic) {
+            return patches.collectList()
+                    .flatMap(batch -> blocking(() -> UserBatchUpdates.updateAllOrNone(storage, batch)))
+                    .map(results -> patchResults(UserBatchUpdates.status(results), Flux.fromIterable(results)));
+        }
+        return Mono.just(patchResults(HttpStatus.OK.value(), patches.buffer(bulkBatchSize)
+                .concatMap(batch -> blocking(() -> UserBatchUpdates.updateEach(storage, batch)))
+                .flatMapIterable(batch -> batch)));
+    }
+
+    /**
+     * Answers {@code If-None-Match} with 304 Not Modified, without reading any user,
+     * when nothing has been written since the response with that {@code ETag}.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<UserDataListResponse>> getUsers(
+            @RequestParam(name = "From") LocalDate from,
+            @RequestParam(name = "To") LocalDate to,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            ServerWebExchange exchange) {
+
+        if (from.isAfter(to) || (limit != null && limit < 1)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        if (exchange.checkNotModified(eTag())) {
+            return Mono.empty();
+        }
+
+        BirthDateKey after = cursor != null ? UserCursor.decode(cursor) : null;
+        if (limit == null) {
+            List<User> userDataList = rangeCache.find(from, to, after, Long.MAX_VALUE);
+            return Mono.just(ResponseEntity.ok(new UserDataListResponse(HttpStatus.OK.value(), userDataList)));
+        }
+
+        // one extra user tells whether there is a next page
+        List<User> userDataList = rangeCache.find(from, to, after, limit + 1L);
+        String nextCursor = null;
+        if (userDataList.size() > limit) {
+            userDataList = userDataList.subList(0, limit);
+            nextCursor = UserCursor.encode(userDataList.get(limit - 1));
+        }
+        return Mono.just(ResponseEntity.ok(new UserDataListResponse(HttpStatus.OK.value(), userDataList, nextCursor)));
+    }
+
+    @GetMapping(params = "stream=true")
+    public Mono<ResponseEntity<Flux<User>>> streamUsers(
+            @RequestParam(name = "From") LocalDate from,
+            @RequestParam(name = "To") LocalDate to,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            ServerWebExchange exchange) {
+
+        if (from.isAfter(to)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        if (exchange.checkNotModified(eTag())) {
+            return Mono.empty();
+        }
+
+        BirthDateKey after = cursor != null ? UserCursor.decode(cursor) : null;
+        return Mono.just(ResponseEntity.ok(Flux.fromStream(() -> storage.findByBirthDateBetween(from, to, after))));
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<UserDataListResponse>> searchUsers(
+            @RequestParam(name = "country", required = false) String country,
+            @RequestParam(name = "city", required = false) String city,
+            @RequestParam(name = "state", required = false) String state,
+            @RequestParam(name = "zip", required = false) String zip,
+            @RequestParam(name = "first_name", required = false) String firstName,
+            @RequestParam(name = "last_name", required = false) String lastName,
+            @RequestParam(name = "From", required = false) LocalDate from,
+            @RequestParam(name = "To", required = false) LocalDate to,
+            @RequestParam(name = "limit", defaultValue = "100") int limit) {
+
+        UserSearch search = new UserSearch(country, city, state, zip, firstName, lastName, from, to);
+        if (!search.isValid() || limit < 1) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return blocking(() -> ResponseEntity.ok(
+                new UserDataListResponse(HttpStatus.OK.value(), searchIndex.search(search, limit))));
+    }
+
+    @GetMapping("/stats")
+    public Mono<ResponseEntity<UserStatsResponse>> getStats() {
+        return blocking(() -> ResponseEntity.ok(new UserStatsResponse(HttpStatus.OK.value(), statistics.stats())));
+    }
+
+    /**
+     * Same as {@link UserController#streamChanges}, each subscriber polls the change log on its own interval.
+     * Ticks a slow subscriber didn't request are dropped, the next one picks up everything since.
+     */
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamChanges(
+            @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestParam(name = "since", required = false) Long since) {
+        return Flux.defer(() -> {
+            UserChangeLog.Cursor cursor = changeLog.cursor(lastEventId != null ? lastEventId : since);
+            return Flux.interval(Duration.ZERO, changesPollInterval)
+                    .onBackpressureDrop()
+                    .concatMap(tick -> Flux.fromIterable(changeEvents(cursor)), 1)
+                    .takeUntil(event -> RESYNC.equals(event.event()));
+        });
+    }
+
+    /**
+     * Streams every user as NDJSON from a point-in-time snapshot of the storage.
+     */
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> exportUsers() {
+        return Flux.using(storage::openSnapshot, snapshot -> Flux.fromStream(snapshot.stream()), UserStore.Snapshot::close);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<UserDataResponse>> getUser(@PathVariable(name = "id") long id) {
+        VersionedUser user = storage.findVersionedById(id)
+                .orElseThrow(() -> new UserNotFoundException("User with id not found"));
+        return Mono.just(ResponseEntity.ok()
+                .eTag(UserETags.of(user.version()))
+                .body(new UserDataResponse(200, user.user())));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<UserDataResponse>> updateUser(@PathVariable(name = "id") long id,
+                                                             @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                             @Valid @RequestBody UserUpdateRequest request) {
+        long expectedVersion = UserETags.expectedVersion(ifMatch);
+        return blocking(() -> {
+            VersionedUser user = storage.update(id, expectedVersion, request::applyTo)
+                    .orElseThrow(() -> new UserNotFoundException("User with id not found"));
+            return ResponseEntity.ok()
+                    .eTag(UserETags.of(user.version()))
+                    .body(new UserDataResponse(200, user.user()));
+        });
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteUser(@PathVariable(name = "id") long id) {
+        return blocking(() -> {
+            storage.delete(id).orElseThrow(() -> new UserNotFoundException("User with id not found"));
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    private List<ServerSentEvent<Object>> changeEvents(UserChangeLog.Cursor cursor) {
+        List<ServerSentEvent<Object>> events = new ArrayList<>();
+        List<UserChange> changes;
+        do {
+            changes = cursor.poll(CHANGES_BATCH_SIZE);
+            for (UserChange change : changes) {
+                events.add(ServerSentEvent.builder()
+                        .id(Long.toString(change.sequence()))
+                        .event(change.type().eventName())
+                        .data((Object) change)
+                        .build());
+            }
+        } while (changes.size() == CHANGES_BATCH_SIZE);
+        if (cursor.lost()) {
+            long sequence = changeLog.latestSequence();
+            events.add(ServerSentEvent.builder()
+                    .id(Long.toString(sequence))
+                    .event(RESYNC)
+                    .data((Object) Map.of("sequence", sequence))
+                    .build());
+        }
+        return events;
+    }
+
+    private List<BulkResult> createUsers(List<BulkUser> batch) {
+        boolean[] created = storage.createAllIfEmailAbsent(batch.stream()
+                .map(BulkUser::user)
+                .filter(Objects::nonNull)
+                .toList());
+        List<BulkResult> results = new ArrayList<>(batch.size());
+        int next = 0;
+        for (BulkUser bulkUser : batch) {
+            if (bulkUser.user() == null) {
+                results.add(new BulkResult(bulkUser.line(), 400, null, bulkUser.error()));
+            } else if (created[next++]) {
+                results.add(new BulkResult(bulkUser.line(), 201, bulkUser.user().getId(), null));
+            } else {
+                results.add(new BulkResult(bulkUser.line(), 400, null, "user with this email is already registered"));
+            }
+        }
+        return results;
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> patchResults(int code, Flux<PatchResult> results) {
+        AtomicLong updated = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        Flux<String> written = results
+                .doOnNext(result -> (result.code() == UserBatchUpdates.UPDATED ? updated : failed).incrementAndGet())
+                .index((index, result) -> (index == 0 ? "" : ",") + json(patchResultWriter, result));
+        Flux<String> body = Flux.concat(
+                Mono.just("{\"code\":" + code + ",\"results\":["),
+                written,
+                Mono.fromSupplier(() -> "],\"updated\":" + updated.get() + ",\"failed\":" + failed.get() + "}"));
+        return ResponseEntity.status(code)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body.map(text -> DefaultDataBufferFactory.sharedInstance.wrap(text.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static String json(ObjectWriter writer, Object result) {
+        try {
+            return writer.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String eTag() {
+        return UserETags.of(storage.modificationVersion());
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private record BulkResult(int line, int code, Long id, String message) {
+    }
+}
@@ -0,0 +1,29 @@
+package dev.kamui.clearsolutiontest.format;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+
+/**
+ * The WebFlux counterpart of {@link PayloadFormatConfig}: Smile is written by the default encoder with the mapper
+ * of {@link PayloadFormats}, after JSON, and read by a decoder WebFlux does not register on its own.
+ * CBOR is left out, as the WebFlux CBOR codecs cannot encode or decode a {@code Publisher}
+ * and fail every response they are picked for.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePayloadFormatConfig {
+
+    @Bean
+    public CodecCustomizer payloadFormatCodecCustomizer(PayloadFormats formats) {
+        return configurer -> {
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(formats.smile(),
+                    PayloadFormats.APPLICATION_SMILE));
+            configurer.customCodecs().register(new Jackson2SmileDecoder(formats.smile(),
+                    PayloadFormats.APPLICATION_SMILE));
+        };
+    }
+}
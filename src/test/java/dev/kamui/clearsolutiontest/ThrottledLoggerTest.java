@@ -0,0 +1,35 @@
+package dev.kamui.clearsolutiontest;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ThrottledLoggerTest {
+
+    @Test
+    public void shouldLogUpToLimitPerSecondAndReportTheRest() {
+        Logger logger = (Logger) LoggerFactory.getLogger("throttled-logger-test");
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        AtomicLong clock = new AtomicLong();
+        ThrottledLogger throttled = new ThrottledLogger(logger, 3, clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            throttled.error("error {}", i);
+        }
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        throttled.error("error {}", 10);
+
+        assertEquals(List.of("error 0", "error 1", "error 2", "7 more errors were not logged", "error 10"),
+                appender.list.stream().map(ILoggingEvent::getFormattedMessage).toList());
+    }
+}
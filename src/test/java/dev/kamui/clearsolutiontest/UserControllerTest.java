@@ -1,28 +1,67 @@
 package dev.kamui.clearsolutiontest;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.jayway.jsonpath.JsonPath;
+import dev.kamui.clearsolutiontest.admission.AdmissionInterceptor;
+import dev.kamui.clearsolutiontest.admission.AimdLimiter;
+import dev.kamui.clearsolutiontest.cache.UserRangeCache;
+import dev.kamui.clearsolutiontest.changes.UserChangeLog;
+import dev.kamui.clearsolutiontest.controller.UserChangeEmitters;
 import dev.kamui.clearsolutiontest.controller.UserController;
+import dev.kamui.clearsolutiontest.controller.UserRequestParser;
+import dev.kamui.clearsolutiontest.controller.UserResponseWriter;
+import dev.kamui.clearsolutiontest.format.PayloadFormatConfig;
+import dev.kamui.clearsolutiontest.format.PayloadFormats;
+import dev.kamui.clearsolutiontest.id.IdGeneratorConfig;
+import dev.kamui.clearsolutiontest.search.UserSearchIndex;
+import dev.kamui.clearsolutiontest.stats.UserStatistics;
+import dev.kamui.clearsolutiontest.storage.StorageConfig;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.hamcrest.core.IsNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.Map;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.hamcrest.Matchers.is;
-
-@WebMvcTest(UserController.class)
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WebMvcTest(controllers = UserController.class, properties = "spring.main.web-application-type=servlet")
+@Import({UserStore.class, StorageConfig.class, UserResponseWriter.class, UserRequestParser.class, IdGeneratorConfig.class,
+        SimpleMeterRegistry.class, UserRangeCache.class, UserSearchIndex.class, UserChangeLog.class,
+        UserChangeEmitters.class, AdmissionInterceptor.class, UserStatistics.class,
+        PayloadFormats.class, PayloadFormatConfig.class})
 class UserControllerTest {
 
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AdmissionInterceptor admissionInterceptor;
+
     private MvcResult defaultUser;
 
     @BeforeEach
@@ -200,6 +239,119 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.data.phone_number", is("380991815459")));
     }
 
+    @Test
+    @DirtiesContext
+    public void shouldRejectUpdateOfModifiedUserWithIfMatch() throws Exception {
+        int userId = JsonPath.read(defaultUser.getResponse().getContentAsString(), "$.data.id");
+        String eTag = mvc.perform(get("/api/v1/users/{id}", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.email", is("frodo@gmail.com")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        String updateRequestBody =
+                """
+                        {
+                             "phone_number": "380991815459"
+                         }
+                        """;
+
+        String updatedETag = mvc.perform(put("/api/v1/users/{id}", userId)
+                        .header("If-Match", eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(updateRequestBody))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(put("/api/v1/users/{id}", userId)
+                        .header("If-Match", eTag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(updateRequestBody))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error_details.code", is(412)));
+        mvc.perform(get("/api/v1/users/{id}", userId))
+                .andExpect(header().string("ETag", updatedETag));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldShedWritesOverLimitAndKeepServingReads() throws Exception {
+        int userId = JsonPath.read(defaultUser.getResponse().getContentAsString(), "$.data.id");
+        AimdLimiter writes = admissionInterceptor.writeLimiter();
+        int held = 0;
+        while (writes.tryAcquire() >= 0) {
+            held++;
+        }
+
+        mvc.perform(delete("/api/v1/users/{id}", userId))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.error_details.code", is(503)));
+        mvc.perform(get("/api/v1/users/{id}", userId))
+                .andExpect(status().isOk());
+
+        for (int i = 0; i < held; i++) {
+            writes.release();
+        }
+        mvc.perform(delete("/api/v1/users/{id}", userId))
+                .andExpect(status().isNoContent());
+        assertEquals(1, meterRegistry.get("users.admission.requests")
+                .tags("kind", "write", "outcome", "rejected").counter().count());
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldLimitBulkRequestsApartFromWrites() throws Exception {
+        int userId = JsonPath.read(defaultUser.getResponse().getContentAsString(), "$.data.id");
+        AimdLimiter bulk = admissionInterceptor.bulkLimiter();
+        int held = 0;
+        while (bulk.tryAcquire() >= 0) {
+            held++;
+        }
+
+        mvc.perform(post("/api/v1/users/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"first_name\": \"Gollum\"}\n"))
+                .andExpect(status().isServiceUnavailable());
+        mvc.perform(delete("/api/v1/users/{id}", userId))
+                .andExpect(status().isNoContent());
+
+        for (int i = 0; i < held; i++) {
+            bulk.release();
+        }
+        assertEquals(0, admissionInterceptor.writeLimiter().inFlight());
+        assertEquals(1, meterRegistry.get("users.admission.requests")
+                .tags("kind", "bulk", "outcome", "rejected").counter().count());
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldHoldBulkPermitWhileExportStreams() throws Exception {
+        AimdLimiter bulk = admissionInterceptor.bulkLimiter();
+        int held = 0;
+        while (bulk.tryAcquire() >= 0) {
+            held++;
+        }
+        bulk.release();
+        held--;
+
+        MvcResult streaming = mvc.perform(get("/api/v1/users/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(get("/api/v1/users/export"))
+                .andExpect(status().isServiceUnavailable());
+        mvc.perform(get("/api/v1/users").param("stream", "true"))
+                .andExpect(status().isServiceUnavailable());
+        assertEquals(held + 1, bulk.inFlight());
+
+        mvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk());
+        assertEquals(held, bulk.inFlight());
+
+        for (int i = 0; i < held; i++) {
+            bulk.release();
+        }
+    }
+
     @Test
     @DirtiesContext
     public void shouldFailedUpdateIfUserNotExist() throws Exception {
@@ -245,6 +397,20 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.error_details.message", is("user not found")));
     }
 
+    @Test
+    @DirtiesContext
+    public void shouldCountHandledErrorsByExceptionType() throws Exception {
+        mvc.perform(delete("/api/v1/users/100"))
+                .andExpect(status().isNotFound());
+        mvc.perform(delete("/api/v1/users/101"))
+                .andExpect(status().isNotFound());
+
+        assertEquals(2, meterRegistry.get("users.errors")
+                .tag("exception", "UserNotFoundException")
+                .counter().count());
+        assertEquals(1, meterRegistry.get("users.store.size").gauge().value());
+    }
+
     @Test
     @DirtiesContext
     public void shouldReturnUsersArrayWithValidBirthDate() throws Exception {
@@ -279,4 +445,330 @@ class UserControllerTest {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DirtiesContext
+    public void shouldReturnUsersPageByPageWithCursor() throws Exception {
+        String requestBody =
+                """
+                        {
+                             "first_name": "Bilbo",
+                             "last_name": "Baggins",
+                             "email": "bilbo@gmail.com",
+                             "birth_data": "2001-10-31"
+                         }
+                        """;
+        mvc.perform(post("/api/v1/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(requestBody));
+
+        MvcResult firstPage = mvc.perform(get("/api/v1/users")
+                        .param("From", "2000-01-01")
+                        .param("To", "2005-01-01")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].birth_date", is("2001-10-31")))
+                .andReturn();
+        String cursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.next_cursor");
+
+        mvc.perform(get("/api/v1/users")
+                        .param("From", "2000-01-01")
+                        .param("To", "2005-01-01")
+                        .param("limit", "1")
+                        .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].birth_date", is("2004-10-31")))
+                .andExpect(jsonPath("$.next_cursor").doesNotExist());
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldReturnBadRequestWithInvalidCursor() throws Exception {
+        mvc.perform(get("/api/v1/users")
+                        .param("From", "2000-01-01")
+                        .param("To", "2005-01-01")
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error_details.message", is("invalid cursor")));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldAnswerNotModifiedUntilUsersChange() throws Exception {
+        String eTag = mvc.perform(get("/api/v1/users")
+                        .param("From", "2003-01-01")
+                        .param("To", "2004-11-01"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(get("/api/v1/users")
+                        .param("From", "2003-01-01")
+                        .param("To", "2004-11-01")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mvc.perform(delete("/api/v1/users/{id}", (int) JsonPath.read(defaultUser.getResponse().getContentAsString(), "$.data.id")))
+                .andExpect(status().isNoContent());
+
+        mvc.perform(get("/api/v1/users")
+                        .param("From", "2003-01-01")
+                        .param("To", "2004-11-01")
+                        .header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(0)));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldStreamUsersArray() throws Exception {
+        MvcResult result = mvc.perform(get("/api/v1/users")
+                        .param("From", "2003-01-01")
+                        .param("To", "2004-11-01")
+                        .param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].email", is("frodo@gmail.com")));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldNegotiateSmileAndCborWithJsonAsDefault() throws Exception {
+        ObjectMapper cbor = new CBORMapper();
+        ObjectMapper smile = new SmileMapper();
+        byte[] requestBody = cbor.writeValueAsBytes(Map.of(
+                "first_name", "Samwise",
+                "last_name", "Gamgee",
+                "email", "sam@gmail.com",
+                "birth_data", "2002-04-06",
+                "address", Map.of("country", "Shire", "city", "Hobbiton")));
+
+        byte[] created = mvc.perform(post("/api/v1/users")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(requestBody))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode user = cbor.readTree(created).path("data");
+        assertEquals("Samwise", user.path("first_name").asText());
+        assertEquals("Hobbiton", user.path("address").path("city").asText());
+
+        byte[] users = mvc.perform(get("/api/v1/users")
+                        .param("From", "2002-01-01")
+                        .param("To", "2004-11-01")
+                        .accept(PayloadFormats.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(PayloadFormats.APPLICATION_SMILE))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode page = smile.readTree(users);
+        assertEquals(2, page.path("data").size());
+        assertEquals("2002-04-06", page.path("data").path(0).path("birth_date").asText());
+
+        MvcResult stream = mvc.perform(get("/api/v1/users")
+                        .param("From", "2002-01-01")
+                        .param("To", "2004-11-01")
+                        .param("stream", "true")
+                        .header("Accept", "application/json;q=0.5, application/x-jackson-smile"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] streamed = mvc.perform(asyncDispatch(stream))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(PayloadFormats.APPLICATION_SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(page.path("data"), smile.readTree(streamed).path("data"));
+
+        mvc.perform(get("/api/v1/users")
+                        .param("From", "2002-01-01")
+                        .param("To", "2004-11-01"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.data[0].first_name", is("Samwise")));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldCreateUsersFromNdjsonAndReportEveryLine() throws Exception {
+        String requestBody = """
+                {"first_name": "Bilbo", "last_name": "Baggins", "email": "bilbo@gmail.com", "birth_data": "2001-10-31"}
+                {"first_name": "Frodo", "last_name": "Baggins", "email": "frodo@gmail.com", "birth_data": "2004-10-31"}
+                {"first_name": "Sam", "last_name": "Gamgee", "email": "sam.gmail.com", "birth_data": "2001-10-31"}
+                {"first_name": "Merry"
+                """;
+
+        mvc.perform(post("/api/v1/users/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", is(1)))
+                .andExpect(jsonPath("$.failed", is(3)))
+                .andExpect(jsonPath("$.results[0].line", is(1)))
+                .andExpect(jsonPath("$.results[0].code", is(201)))
+                .andExpect(jsonPath("$.results[1].message", is("user with this email is already registered")))
+                .andExpect(jsonPath("$.results[2].message", is("must be a valid e-mail address")))
+                .andExpect(jsonPath("$.results[3].message", is("malformed json")));
+
+        mvc.perform(get("/api/v1/users")
+                        .param("From", "2001-01-01")
+                        .param("To", "2002-01-01"))
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].email", is("bilbo@gmail.com")));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldApplyBatchUpdatesEachOnItsOwnOrAllOrNothing() throws Exception {
+        int frodoId = JsonPath.read(defaultUser.getResponse().getContentAsString(), "$.data.id");
+        int bilboId = JsonPath.read(mvc.perform(post("/api/v1/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"first_name": "Bilbo", "last_name": "Baggins", "email": "bilbo@gmail.com", "birth_data": "1960-09-22"}"""))
+                .andReturn().getResponse().getContentAsString(), "$.data.id");
+
+        String atomicBody = """
+                {"id": %d, "phone_number": "380991815459"}
+                {"id": %d, "email": "frodo@gmail.com"}
+                """.formatted(frodoId, bilboId);
+        mvc.perform(patch("/api/v1/users/batch")
+                        .param("atomic", "true")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(atomicBody))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.updated", is(0)))
+                .andExpect(jsonPath("$.results[0].code", is(424)))
+                .andExpect(jsonPath("$.results[0].message", is("not applied, line 2 failed")))
+                .andExpect(jsonPath("$.results[1].message", is("user with this email is already registered")));
+        mvc.perform(get("/api/v1/users/{id}", frodoId))
+                .andExpect(jsonPath("$.data.phone_number").value(IsNull.nullValue()));
+
+        String body = atomicBody + """
+                {"id": 1234567}
+                {"phone_number": "380991815459"}
+                """;
+        mvc.perform(patch("/api/v1/users/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated", is(1)))
+                .andExpect(jsonPath("$.failed", is(3)))
+                .andExpect(jsonPath("$.results[0].code", is(200)))
+                .andExpect(jsonPath("$.results[0].id", is(frodoId)))
+                .andExpect(jsonPath("$.results[1].code", is(400)))
+                .andExpect(jsonPath("$.results[2].code", is(404)))
+                .andExpect(jsonPath("$.results[3].message", is("id must not be null")));
+        mvc.perform(get("/api/v1/users/{id}", frodoId))
+                .andExpect(jsonPath("$.data.phone_number", is("380991815459")))
+                .andExpect(jsonPath("$.data.first_name", is("Frodo")));
+
+        mvc.perform(patch("/api/v1/users/batch")
+                        .param("atomic", "true")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("""
+                                {"id": %d, "email": "temp@gmail.com"}
+                                {"id": %d, "email": "frodo@gmail.com"}
+                                {"id": %d, "email": "bilbo@gmail.com"}
+                                """.formatted(frodoId, bilboId, frodoId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated", is(3)));
+        mvc.perform(get("/api/v1/users/{id}", bilboId))
+                .andExpect(jsonPath("$.data.email", is("frodo@gmail.com")));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldExportUsersAsNdjson() throws Exception {
+        MvcResult result = mvc.perform(get("/api/v1/users/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(1, lines.length);
+        assertEquals("frodo@gmail.com", JsonPath.read(lines[0], "$.email"));
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldSearchUsersByNamePrefixAndBirthDates() throws Exception {
+        mvc.perform(get("/api/v1/users/search")
+                        .param("last_name", "bag")
+                        .param("From", "2004-01-01")
+                        .param("To", "2005-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].email", is("frodo@gmail.com")));
+
+        mvc.perform(get("/api/v1/users/search")
+                        .param("last_name", "bag")
+                        .param("country", "Ukraine"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(0)));
+
+        mvc.perform(get("/api/v1/users/search")
+                        .param("From", "2004-01-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldCountUsersByAgeBandBirthYearAndCountry() throws Exception {
+        mvc.perform(post("/api/v1/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"first_name": "Bilbo", "last_name": "Baggins", "email": "bilbo@gmail.com",
+                                 "birth_data": "1960-09-22", "address": {"country": "Shire"}}"""))
+                .andExpect(status().isCreated());
+
+        mvc.perform(get("/api/v1/users/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.total", is(2)))
+                .andExpect(jsonPath("$.data.by_age_band['18-27']", is(1)))
+                .andExpect(jsonPath("$.data.by_age_band['58-67']", is(1)))
+                .andExpect(jsonPath("$.data.by_birth_year['2004']", is(1)))
+                .andExpect(jsonPath("$.data.by_birth_year['1960']", is(1)))
+                .andExpect(jsonPath("$.data.by_country.Shire", is(1)));
+
+        int userId = JsonPath.read(defaultUser.getResponse().getContentAsString(), "$.data.id");
+        mvc.perform(delete("/api/v1/users/{id}", userId))
+                .andExpect(status().isNoContent());
+
+        mvc.perform(get("/api/v1/users/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.total", is(1)))
+                .andExpect(jsonPath("$.data.by_age_band['18-27']").doesNotExist())
+                .andExpect(jsonPath("$.data.by_birth_year['2004']").doesNotExist());
+    }
+
+    @Test
+    @DirtiesContext
+    public void shouldStreamChangesSinceSequence() throws Exception {
+        int userId = JsonPath.read(defaultUser.getResponse().getContentAsString(), "$.data.id");
+        MvcResult result = mvc.perform(get("/api/v1/users/changes").param("since", "0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(delete("/api/v1/users/{id}", userId));
+
+        String body = "";
+        for (int i = 0; i < 50 && !body.contains("event:deleted"); i++) {
+            Thread.sleep(100);
+            body = result.getResponse().getContentAsString();
+        }
+        assertTrue(body.startsWith("id:1\nevent:created\n"), body);
+        assertTrue(body.contains("id:2\nevent:deleted\n"), body);
+        // the stream stays open instead of timing out with the container's default
+        assertEquals(0, result.getRequest().getAsyncContext().getTimeout());
+    }
+}
@@ -0,0 +1,251 @@
+package dev.kamui.clearsolutiontest;
+
+import dev.kamui.clearsolutiontest.exception.UserAlreadyExistException;
+import dev.kamui.clearsolutiontest.exception.UserNotFoundException;
+import dev.kamui.clearsolutiontest.exception.UserVersionConflictException;
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.CompactUserEncoding;
+import dev.kamui.clearsolutiontest.storage.UpdateResult;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import dev.kamui.clearsolutiontest.storage.UserUpdate;
+import dev.kamui.clearsolutiontest.storage.VersionedUser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserStoreTest {
+
+    private final UserStore store = new UserStore();
+
+    @Test
+    public void shouldRejectDuplicateEmail() {
+        assertTrue(store.createIfEmailAbsent(user(1, "frodo@gmail.com")));
+        assertFalse(store.createIfEmailAbsent(user(2, "frodo@gmail.com")));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void shouldTimeEveryPointLookup() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserStore store = new UserStore(new CompactUserEncoding(), meterRegistry);
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+
+        store.findById(1);
+        store.findVersionedById(1);
+        store.findVersionedById(2);
+
+        assertEquals(3, meterRegistry.get("users.store.lookup").timer().count());
+    }
+
+    @Test
+    public void shouldRefuseTakenIdAndReleaseItsEmail() {
+        assertTrue(store.createIfEmailAbsent(user(1, "frodo@gmail.com")));
+
+        assertThrows(IllegalStateException.class, () -> store.createIfEmailAbsent(user(1, "bilbo@gmail.com")));
+
+        assertEquals("frodo@gmail.com", store.findById(1).orElseThrow().getEmail());
+        assertFalse(store.existsByEmail("bilbo@gmail.com"));
+        assertEquals(1, store.size());
+        assertTrue(store.createIfEmailAbsent(user(2, "bilbo@gmail.com")));
+    }
+
+    @Test
+    public void shouldReindexEmailOnUpdate() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+
+        User updated = store.update(1, u -> u.toBuilder().email("bilbo@gmail.com").build()).orElseThrow();
+
+        assertEquals("bilbo@gmail.com", updated.getEmail());
+        assertFalse(store.existsByEmail("frodo@gmail.com"));
+        assertTrue(store.existsByEmail("bilbo@gmail.com"));
+    }
+
+    @Test
+    public void shouldFailUpdateToTakenEmail() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com"));
+
+        assertThrows(UserAlreadyExistException.class,
+                () -> store.update(1, u -> u.toBuilder().email("bilbo@gmail.com").build()));
+        assertEquals("frodo@gmail.com", store.findById(1).orElseThrow().getEmail());
+    }
+
+    @Test
+    public void shouldUpdateOnlyFromExpectedVersion() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        long version = store.findVersionedById(1).orElseThrow().version();
+
+        VersionedUser updated = store.update(1, version, u -> u.toBuilder().firstName("Bilbo").build()).orElseThrow();
+
+        assertTrue(updated.version() > version);
+        assertThrows(UserVersionConflictException.class,
+                () -> store.update(1, version, u -> u.toBuilder().firstName("Sam").build()));
+        assertEquals("Bilbo", store.findById(1).orElseThrow().getFirstName());
+        assertEquals(updated.version(), store.findVersionedById(1).orElseThrow().version());
+    }
+
+    @Test
+    public void shouldReleaseEmailOnDelete() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+
+        assertTrue(store.delete(1).isPresent());
+        assertTrue(store.findById(1).isEmpty());
+        assertTrue(store.createIfEmailAbsent(user(2, "frodo@gmail.com")));
+    }
+
+    @Test
+    public void shouldFindUsersByBirthDateRangeExclusive() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com", LocalDate.of(2004, 10, 31)));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com", LocalDate.of(2001, 10, 31)));
+        store.createIfEmailAbsent(user(3, "sam@gmail.com", LocalDate.of(2002, 5, 1)));
+
+        List<Long> ids = store.findByBirthDateBetween(LocalDate.of(2001, 10, 31), LocalDate.of(2004, 10, 31))
+                .map(User::getId)
+                .toList();
+
+        assertEquals(List.of(3L), ids);
+    }
+
+    @Test
+    public void shouldMoveUserInBirthDateIndexOnUpdate() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com", LocalDate.of(2004, 10, 31)));
+
+        store.update(1, u -> u.toBuilder().birthDate(LocalDate.of(1990, 1, 1)).build());
+
+        assertEquals(0, store.findByBirthDateBetween(LocalDate.of(2004, 1, 1), LocalDate.of(2005, 1, 1)).count());
+        assertEquals(1, store.findByBirthDateBetween(LocalDate.of(1989, 1, 1), LocalDate.of(1991, 1, 1)).count());
+    }
+
+    @Test
+    public void shouldApplyBatchUpdatesInOrderAsOneVersionPerUser() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com", LocalDate.of(1990, 1, 1)));
+
+        // 2 can take the email of 1 once 1 has given it up, and then gives its own back to 1
+        List<UpdateResult> results = store.updateAllOrNone(List.of(
+                new UserUpdate(1, u -> u.toBuilder().email("temp@gmail.com").build()),
+                new UserUpdate(2, u -> u.toBuilder().email("frodo@gmail.com").birthDate(LocalDate.of(2000, 1, 1)).build()),
+                new UserUpdate(1, u -> u.toBuilder().email("bilbo@gmail.com").firstName("Sam").build())));
+
+        assertTrue(results.stream().allMatch(result -> result.updated() != null));
+        assertEquals(results.get(0).updated(), results.get(2).updated());
+        assertEquals("bilbo@gmail.com", store.findById(1).orElseThrow().getEmail());
+        assertEquals("Sam", store.findById(1).orElseThrow().getFirstName());
+        assertEquals("frodo@gmail.com", store.findById(2).orElseThrow().getEmail());
+        assertFalse(store.existsByEmail("temp@gmail.com"));
+        assertEquals(List.of(2L), store.findByBirthDateBetween(LocalDate.of(1999, 1, 1), LocalDate.of(2001, 1, 1))
+                .map(User::getId).toList());
+        assertEquals(0, store.findByBirthDateBetween(LocalDate.of(1989, 1, 1), LocalDate.of(1991, 1, 1)).count());
+    }
+
+    @Test
+    public void shouldApplyNothingOfBatchWithRefusedUpdate() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com"));
+        long version = store.version();
+
+        List<UpdateResult> results = store.updateAllOrNone(List.of(
+                new UserUpdate(1, u -> u.toBuilder().email("sam@gmail.com").build()),
+                new UserUpdate(2, u -> u.toBuilder().email("sam@gmail.com").build())));
+
+        assertEquals(UserAlreadyExistException.class, results.get(1).error().getClass());
+        assertNull(results.get(0).updated());
+        assertNull(results.get(0).error());
+        assertEquals(version, store.version());
+        assertEquals("frodo@gmail.com", store.findById(1).orElseThrow().getEmail());
+        assertFalse(store.existsByEmail("sam@gmail.com"));
+
+        results = store.updateAllOrNone(List.of(
+                new UserUpdate(1, u -> u.toBuilder().firstName("Sam").build()),
+                new UserUpdate(3, u -> u.toBuilder().firstName("Sam").build())));
+        assertEquals(UserNotFoundException.class, results.get(1).error().getClass());
+        assertEquals("Frodo", store.findById(1).orElseThrow().getFirstName());
+    }
+
+    @Test
+    public void shouldApplyEachUpdateOfBatchOnItsOwn() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com"));
+
+        List<UpdateResult> results = store.updateEach(List.of(
+                new UserUpdate(1, u -> u.toBuilder().email("bilbo@gmail.com").build()),
+                new UserUpdate(3, u -> u.toBuilder().firstName("Sam").build()),
+                new UserUpdate(2, u -> u.toBuilder().firstName("Sam").build())));
+
+        assertEquals(UserAlreadyExistException.class, results.get(0).error().getClass());
+        assertEquals(UserNotFoundException.class, results.get(1).error().getClass());
+        assertEquals("Sam", results.get(2).updated().user().getFirstName());
+        assertEquals("Sam", store.findById(2).orElseThrow().getFirstName());
+    }
+
+    @Test
+    public void snapshotShouldNotSeeLaterWrites() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com"));
+
+        try (UserStore.Snapshot snapshot = store.openSnapshot()) {
+            store.update(1, u -> u.toBuilder().firstName("Changed").build());
+            store.delete(2);
+            store.createIfEmailAbsent(user(3, "sam@gmail.com"));
+
+            Map<Long, String> names = snapshot.stream().collect(Collectors.toMap(User::getId, User::getFirstName));
+            assertEquals(Map.of(1L, "Frodo", 2L, "Frodo"), names);
+        }
+
+        assertEquals(2, store.size());
+        assertTrue(store.findById(2).isEmpty());
+        assertEquals("Changed", store.findById(1).orElseThrow().getFirstName());
+        assertEquals(Set.of(1L, 3L), store.findAll().map(User::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void compactEncodingShouldKeepAllFields() {
+        UserStore compactStore = new UserStore(new CompactUserEncoding());
+        User user = user(1, "frodo@gmail.com").toBuilder()
+                .firstName("Фродо")
+                .phoneNumber("380991815459")
+                .address(new Address("Ukraine", "Odesa", null, "042445", "Street"))
+                .build();
+        compactStore.createIfEmailAbsent(user);
+        compactStore.createIfEmailAbsent(user(2, "bilbo@gmail.com"));
+
+        User stored = compactStore.findById(1).orElseThrow();
+        assertEquals("Фродо", stored.getFirstName());
+        assertEquals("Baggins", stored.getLastName());
+        assertEquals("frodo@gmail.com", stored.getEmail());
+        assertEquals(LocalDate.of(2004, 10, 31), stored.getBirthDate());
+        assertEquals("380991815459", stored.getPhoneNumber());
+        assertEquals(new Address("Ukraine", "Odesa", null, "042445", "Street"), stored.getAddress());
+        assertNull(compactStore.findById(2).orElseThrow().getAddress());
+
+        compactStore.update(1, u -> u.toBuilder().email("frodo2@gmail.com").build());
+        assertFalse(compactStore.existsByEmail("frodo@gmail.com"));
+        assertThrows(UserAlreadyExistException.class,
+                () -> compactStore.update(1, u -> u.toBuilder().email("bilbo@gmail.com").build()));
+        compactStore.delete(2);
+        assertFalse(compactStore.existsByEmail("bilbo@gmail.com"));
+    }
+
+    private static User user(long id, String email) {
+        return user(id, email, LocalDate.of(2004, 10, 31));
+    }
+
+    private static User user(long id, String email, LocalDate birthDate) {
+        return User.builder()
+                .id(id)
+                .firstName("Frodo")
+                .lastName("Baggins")
+                .email(email)
+                .birthDate(birthDate)
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package dev.kamui.clearsolutiontest.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AimdLimiterTest {
+
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AimdLimiter limiter = new AimdLimiter(10, 2, 20, TARGET, clock::get);
+
+    @Test
+    public void shouldRejectOverLimitUntilReleased() {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, limiter.tryAcquire());
+        }
+
+        assertEquals(-1, limiter.tryAcquire());
+        limiter.release();
+        assertEquals(9, limiter.tryAcquire());
+    }
+
+    @Test
+    public void shouldGrowAdditivelyWhileBusyAndFast() {
+        for (int round = 0; round < 5; round++) {
+            int admitted = acquireAll();
+            for (int i = 0; i < admitted; i++) {
+                limiter.release(TARGET / 2, admitted - 1);
+            }
+        }
+
+        // a little under one per round, as the limit grows within the round
+        assertEquals(14, limiter.limit());
+    }
+
+    @Test
+    public void shouldNotGrowWhileMostlyIdle() {
+        for (int i = 0; i < 100; i++) {
+            limiter.release(TARGET / 2, limiter.tryAcquire());
+        }
+
+        assertEquals(10, limiter.limit());
+    }
+
+    @Test
+    public void shouldBackOffOncePerLatencyTargetDownToMinimum() {
+        int admitted = acquireAll();
+        for (int i = 0; i < admitted; i++) {
+            limiter.release(TARGET * 2, i);
+        }
+        assertEquals(9, limiter.limit());
+
+        for (int i = 0; i < 50; i++) {
+            clock.addAndGet(TARGET);
+            limiter.release(TARGET * 2, limiter.tryAcquire());
+        }
+        assertEquals(2, limiter.limit());
+    }
+
+    private int acquireAll() {
+        int admitted = 0;
+        while (limiter.tryAcquire() >= 0) {
+            admitted++;
+        }
+        return admitted;
+    }
+}
@@ -0,0 +1,128 @@
+package dev.kamui.clearsolutiontest.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import dev.kamui.clearsolutiontest.dto.UserDataListResponse;
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserJsonCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserStore store = new UserStore();
+    private final UserJsonCache cache = new UserJsonCache(1 << 20, meterRegistry);
+    private final ObjectMapper plain = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cached = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(UserJsonCacheConfig.module(cache))
+            .build();
+
+    @Test
+    public void shouldWriteTheSameJsonFromCache() throws Exception {
+        UserDataListResponse response = new UserDataListResponse(200,
+                List.of(user(1, "frodo@gmail.com"), user(2, "bilbo@gmail.com")), "cursor");
+
+        String expected = plain.writeValueAsString(response);
+
+        assertEquals(expected, cached.writeValueAsString(response));
+        assertEquals(expected, cached.writeValueAsString(response));
+        assertEquals(2, hits());
+    }
+
+    @Test
+    public void shouldNotServeJsonOfUpdatedUser() throws Exception {
+        store.addListener(cache);
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        cached.writeValueAsString(store.findById(1).orElseThrow());
+
+        store.update(1, u -> u.toBuilder().firstName("Bilbo").build());
+
+        assertTrue(cached.writeValueAsString(store.findById(1).orElseThrow()).contains("\"first_name\":\"Bilbo\""));
+        assertEquals(0, hits());
+    }
+
+    @Test
+    public void shouldNotServeJsonOfUserWithDifferentFields() throws Exception {
+        User user = user(1, "frodo@gmail.com");
+        cached.writeValueAsString(user);
+
+        User changed = user.toBuilder().phoneNumber("380991815460").build();
+
+        assertEquals(plain.writeValueAsString(changed), cached.writeValueAsString(changed));
+        assertEquals(0, hits());
+    }
+
+    @Test
+    public void shouldWriteBinaryFormatsWithoutCache() throws Exception {
+        ObjectMapper plainSmile = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build();
+        ObjectMapper cachedSmile = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory())
+                .modulesToInstall(UserJsonCacheConfig.module(cache))
+                .build();
+        UserDataListResponse response = new UserDataListResponse(200, List.of(user(1, "frodo@gmail.com")), null);
+        cached.writeValueAsString(response);
+
+        byte[] smile = cachedSmile.writeValueAsBytes(response);
+
+        assertArrayEquals(plainSmile.writeValueAsBytes(response), smile);
+        assertEquals("frodo@gmail.com", plainSmile.readTree(smile).path("data").path(0).path("email").asText());
+        assertEquals(0, hits());
+    }
+
+    @Test
+    public void shouldNotBufferCachedJsonThatMayBeReplayedAsBinary() throws Exception {
+        User user = user(1, "frodo@gmail.com");
+        cached.writeValueAsString(user);
+
+        // convertValue goes through a TokenBuffer
+        assertEquals("frodo@gmail.com", cached.convertValue(user, JsonNode.class).path("email").asText());
+        assertEquals(0, hits());
+    }
+
+    @Test
+    public void shouldCountTheCachedUserInItsSize() throws Exception {
+        User user = user(1, "frodo@gmail.com");
+        byte[] json = plain.writeValueAsBytes(user);
+        cache.json(user, plain::writeValueAsBytes);
+
+        assertTrue(cache.bytes() >= json.length + UserJsonCache.retainedSize(user));
+        assertTrue(UserJsonCache.retainedSize(user) > 200);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedBeyondMaxSize() throws Exception {
+        UserJsonCache small = new UserJsonCache(16 * 1024, meterRegistry);
+        for (long id = 1; id <= 1000; id++) {
+            User user = user(id, "user" + id + "@gmail.com");
+            small.json(user, plain::writeValueAsBytes);
+        }
+
+        assertTrue(small.bytes() <= 16 * 1024);
+        assertTrue(small.bytes() > 0);
+    }
+
+    private double hits() {
+        return meterRegistry.get("users.json.cache.requests").tag("result", "hit").counter().count();
+    }
+
+    private static User user(long id, String email) {
+        return User.builder()
+                .id(id)
+                .firstName("Frodo")
+                .lastName("Baggins")
+                .email(email)
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .address(new Address("Ukraine", "Odesa", "State", "042445", "Street"))
+                .phoneNumber("380991815459")
+                .build();
+    }
+}
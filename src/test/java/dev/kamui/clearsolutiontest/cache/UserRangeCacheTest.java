@@ -0,0 +1,114 @@
+package dev.kamui.clearsolutiontest.cache;
+
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserRangeCacheTest {
+
+    private static final LocalDate YOUNG_FROM = LocalDate.of(1999, 12, 31);
+    private static final LocalDate YOUNG_TO = LocalDate.of(2006, 1, 1);
+    private static final LocalDate OLD_FROM = LocalDate.of(1979, 12, 31);
+    private static final LocalDate OLD_TO = LocalDate.of(1990, 1, 1);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserStore store = new UserStore();
+    private final UserRangeCache cache = new UserRangeCache(store, meterRegistry, true, 100);
+
+    @Test
+    public void shouldServeRepeatedRangeFromCache() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com", LocalDate.of(2001, 1, 1)));
+
+        List<User> first = cache.find(YOUNG_FROM, YOUNG_TO, null, Long.MAX_VALUE);
+        List<User> second = cache.find(YOUNG_FROM, YOUNG_TO, null, Long.MAX_VALUE);
+
+        assertSame(first, second);
+        assertEquals(1, requests("hit"));
+        assertEquals(1, requests("miss"));
+    }
+
+    @Test
+    public void shouldDropOnlyRangesContainingTheWrittenUser() {
+        cache.find(YOUNG_FROM, YOUNG_TO, null, Long.MAX_VALUE);
+        cache.find(OLD_FROM, OLD_TO, null, Long.MAX_VALUE);
+
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com", LocalDate.of(2001, 1, 1)));
+
+        assertEquals(1, cache.find(YOUNG_FROM, YOUNG_TO, null, Long.MAX_VALUE).size());
+        assertEquals(0, cache.find(OLD_FROM, OLD_TO, null, Long.MAX_VALUE).size());
+        assertEquals(1, requests("hit"));
+    }
+
+    @Test
+    public void shouldDropOldAndNewRangeOfMovedUser() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com", LocalDate.of(2001, 1, 1)));
+        cache.find(YOUNG_FROM, YOUNG_TO, null, Long.MAX_VALUE);
+        cache.find(OLD_FROM, OLD_TO, null, Long.MAX_VALUE);
+
+        store.update(1, u -> u.toBuilder().birthDate(LocalDate.of(1985, 1, 1)).build());
+
+        assertEquals(0, cache.find(YOUNG_FROM, YOUNG_TO, null, Long.MAX_VALUE).size());
+        assertEquals(1, cache.find(OLD_FROM, OLD_TO, null, Long.MAX_VALUE).size());
+        assertEquals(0, requests("hit"));
+    }
+
+    @Test
+    public void shouldDropOnlyRangesSharingAStartThatEndAfterTheWrittenUser() {
+        for (int year = 1981; year <= 1990; year++) {
+            cache.find(OLD_FROM, LocalDate.of(year, 1, 1), null, Long.MAX_VALUE);
+        }
+
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com", LocalDate.of(1985, 6, 1)));
+
+        for (int year = 1981; year <= 1990; year++) {
+            assertEquals(year > 1985 ? 1 : 0, cache.find(OLD_FROM, LocalDate.of(year, 1, 1), null, Long.MAX_VALUE).size());
+        }
+        assertEquals(5, requests("hit"));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedBeyondMaxUsers() {
+        for (int i = 1; i <= 30; i++) {
+            store.createIfEmailAbsent(user(i, "user" + i + "@gmail.com", LocalDate.of(2001, 1, i)));
+        }
+        for (int i = 0; i < 10; i++) {
+            cache.find(YOUNG_FROM.minusDays(i), YOUNG_TO, null, Long.MAX_VALUE);
+        }
+
+        assertTrue(cache.size() <= 100);
+        cache.find(YOUNG_FROM.minusDays(9), YOUNG_TO, null, Long.MAX_VALUE);
+        assertEquals(1, requests("hit"));
+    }
+
+    @Test
+    public void shouldEvictEmptyRangesBeyondMaxUsers() {
+        for (int i = 0; i < 1000; i++) {
+            cache.find(OLD_FROM.minusDays(i), OLD_TO, null, Long.MAX_VALUE);
+        }
+
+        assertEquals(100, cache.size());
+        cache.find(OLD_FROM, OLD_TO, null, Long.MAX_VALUE);
+        assertEquals(0, requests("hit"));
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("users.range.cache.requests").tag("result", result).counter().count();
+    }
+
+    private static User user(long id, String email, LocalDate birthDate) {
+        return User.builder()
+                .id(id)
+                .firstName("Frodo")
+                .lastName("Baggins")
+                .email(email)
+                .birthDate(birthDate)
+                .build();
+    }
+}
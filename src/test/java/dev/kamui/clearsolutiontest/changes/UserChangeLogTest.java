@@ -0,0 +1,102 @@
+package dev.kamui.clearsolutiontest.changes;
+
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserChangeLogTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserStore store = new UserStore();
+    private final UserChangeLog changeLog = new UserChangeLog(store, meterRegistry, 4);
+
+    @Test
+    public void shouldPublishEveryWriteInOrder() {
+        UserChangeLog.Cursor cursor = changeLog.cursor(0L);
+
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.update(1, u -> u.toBuilder().firstName("Bilbo").build());
+        store.delete(1);
+
+        List<UserChange> changes = cursor.poll(100);
+        assertEquals(List.of(1L, 2L, 3L), changes.stream().map(UserChange::sequence).toList());
+        assertEquals(List.of(UserChange.Type.CREATED, UserChange.Type.UPDATED, UserChange.Type.DELETED),
+                changes.stream().map(UserChange::type).toList());
+        assertEquals("Bilbo", changes.get(1).user().getFirstName());
+        assertNull(changes.get(2).user());
+        assertTrue(cursor.poll(100).isEmpty());
+        assertEquals(3, cursor.lastSeen());
+    }
+
+    @Test
+    public void shouldResumeAfterLastSeenChange() {
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com"));
+
+        assertEquals(List.of(2L), changeLog.cursor(1L).poll(100).stream().map(UserChange::id).toList());
+        assertTrue(changeLog.cursor(null).poll(100).isEmpty());
+    }
+
+    @Test
+    public void shouldLoseCursorOverwrittenByWriters() {
+        UserChangeLog.Cursor cursor = changeLog.cursor(null);
+        for (int i = 1; i <= 5; i++) {
+            store.createIfEmailAbsent(user(i, "user" + i + "@gmail.com"));
+        }
+
+        assertTrue(cursor.poll(100).isEmpty());
+        assertTrue(cursor.lost());
+        assertEquals(5, changeLog.latestSequence());
+        assertEquals(1, meterRegistry.get("users.changes.resyncs").counter().count());
+        assertEquals(4, changeLog.cursor(1L).poll(100).size());
+    }
+
+    @Test
+    public void shouldPublishChangesOfOneUserInVersionOrder() throws InterruptedException {
+        UserChangeLog changeLog = new UserChangeLog(store, meterRegistry, 1 << 16);
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            String firstName = "Writer" + w;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    store.update(1, u -> u.toBuilder().firstName(firstName).build());
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        List<UserChange> changes = new ArrayList<>();
+        UserChangeLog.Cursor cursor = changeLog.cursor(0L);
+        for (List<UserChange> polled = cursor.poll(1_000); !polled.isEmpty(); polled = cursor.poll(1_000)) {
+            changes.addAll(polled);
+        }
+        assertEquals(20_001, changes.size());
+        for (int i = 1; i < changes.size(); i++) {
+            assertTrue(changes.get(i).version() > changes.get(i - 1).version());
+        }
+        assertEquals(store.findById(1).orElseThrow(), changes.get(changes.size() - 1).user());
+    }
+
+    private static User user(long id, String email) {
+        return User.builder()
+                .id(id)
+                .firstName("Frodo")
+                .lastName("Baggins")
+                .email(email)
+                .birthDate(LocalDate.of(2004, 10, 31))
+                .build();
+    }
+}
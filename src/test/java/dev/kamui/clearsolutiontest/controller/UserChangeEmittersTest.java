@@ -0,0 +1,81 @@
+package dev.kamui.clearsolutiontest.controller;
+
+import dev.kamui.clearsolutiontest.changes.UserChangeLog;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserChangeEmittersTest {
+
+    private final UserStore store = new UserStore();
+    private final UserChangeEmitters emitters = new UserChangeEmitters(
+            new UserChangeLog(store, new SimpleMeterRegistry(), 64), new SimpleMeterRegistry(),
+            Duration.ofMillis(10), 1, Duration.ZERO, Duration.ofMillis(200));
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    @AfterEach
+    public void tearDown() {
+        unblock.countDown();
+        emitters.close();
+    }
+
+    @Test
+    public void shouldDropClientThatNeverReads() throws Exception {
+        CountDownLatch dropped = new CountDownLatch(1);
+        emitters.subscribe(null, new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public void completeWithError(Throwable ex) {
+                dropped.countDown();
+            }
+        });
+        BlockingQueue<SseEmitter.SseEventBuilder> received = new LinkedBlockingQueue<>();
+        emitters.subscribe(null, new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                received.add(builder);
+            }
+        });
+
+        for (int i = 1; i <= 3; i++) {
+            store.createIfEmailAbsent(user(i, "user" + i + "@gmail.com"));
+            assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        }
+
+        assertTrue(dropped.await(5, TimeUnit.SECONDS));
+        assertEquals(1, emitters.subscribers());
+        store.createIfEmailAbsent(user(4, "user4@gmail.com"));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+    }
+
+    private static User user(long id, String email) {
+        return User.builder()
+                .id(id)
+                .firstName("Frodo")
+                .lastName("Baggins")
+                .email(email)
+                .birthDate(LocalDate.of(2004, 10, 31))
+                .build();
+    }
+}
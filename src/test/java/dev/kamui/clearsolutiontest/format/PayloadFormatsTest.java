@@ -0,0 +1,57 @@
+package dev.kamui.clearsolutiontest.format;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kamui.clearsolutiontest.dto.UserDataListResponse;
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadFormatsTest {
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final PayloadFormats formats = new PayloadFormats(json, Jackson2ObjectMapperBuilder.json());
+
+    @Test
+    public void shouldPreferJsonUnlessSmileOrCborIsAskedFor() {
+        assertEquals(MediaType.APPLICATION_JSON, formats.negotiate(null));
+        assertEquals(MediaType.APPLICATION_JSON, formats.negotiate("*/*"));
+        assertEquals(MediaType.APPLICATION_JSON, formats.negotiate("not a media type"));
+        assertEquals(MediaType.APPLICATION_JSON, formats.negotiate("application/*;q=0.9, application/cbor;q=0.5"));
+        assertEquals(MediaType.APPLICATION_JSON, formats.negotiate("application/x-jackson-smile;q=0, text/plain"));
+        assertEquals(PayloadFormats.APPLICATION_SMILE, formats.negotiate("application/x-jackson-smile"));
+        assertEquals(MediaType.APPLICATION_CBOR, formats.negotiate("application/json;q=0.8, application/cbor"));
+        assertEquals(MediaType.APPLICATION_CBOR, formats.negotiate("text/html, application/cbor;q=0.1"));
+    }
+
+    @Test
+    public void shouldKeepTheFieldsOfJsonInEveryFormat() throws Exception {
+        UserDataListResponse response = new UserDataListResponse(200, List.of(User.builder()
+                .id(1L)
+                .firstName("Frodo")
+                .lastName("Baggins")
+                .email("frodo@gmail.com")
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .address(new Address("Ukraine", "Odesa", "State", "042445", "Street"))
+                .build()), "cursor");
+        JsonNode expected = json.readTree(json.writeValueAsBytes(response));
+
+        for (MediaType format : List.of(PayloadFormats.APPLICATION_SMILE, MediaType.APPLICATION_CBOR)) {
+            ObjectMapper mapper = formats.mapper(format);
+            byte[] encoded = mapper.writeValueAsBytes(response);
+
+            assertNotSame(json, mapper);
+            assertEquals(expected, mapper.readTree(encoded));
+            assertEquals(response, mapper.readValue(encoded, UserDataListResponse.class));
+        }
+        assertSame(json, formats.mapper("application/json;charset=UTF-8"));
+        assertSame(formats.smile(), formats.mapper("application/x-jackson-smile"));
+    }
+}
@@ -0,0 +1,107 @@
+package dev.kamui.clearsolutiontest.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorTest {
+
+    @Test
+    public void blockGeneratorShouldStartFromOne() {
+        assertEquals(1, new BlockIdGenerator(64).nextId());
+    }
+
+    @Test
+    public void blockGeneratorShouldNotRepeatIdsAcrossThreads() throws Exception {
+        assertUniqueAcrossThreads(new BlockIdGenerator(16));
+    }
+
+    @Test
+    public void snowflakeGeneratorShouldNotRepeatIdsAcrossThreads() throws Exception {
+        assertUniqueAcrossThreads(new SnowflakeIdGenerator(7));
+    }
+
+    @Test
+    public void snowflakeGeneratorShouldKeepIncreasingWhenClockGoesBack() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH.toEpochMilli() + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+
+        long first = generator.nextId();
+        clock.addAndGet(-500);
+        long second = generator.nextId();
+
+        assertTrue(second > first);
+    }
+
+    @Test
+    public void blockGeneratorShouldContinuePastRecoveredIds() {
+        BlockIdGenerator generator = new BlockIdGenerator(64);
+        generator.advancePast(1000);
+        generator.advancePast(10);
+
+        assertEquals(1001, generator.nextId());
+    }
+
+    @Test
+    public void snowflakeGeneratorShouldContinuePastRecoveredIdsOfItsNode() {
+        AtomicLong clock = new AtomicLong(SnowflakeIdGenerator.EPOCH.toEpochMilli() + 1000);
+        long recovered = new SnowflakeIdGenerator(1, clock::get).nextId();
+        long otherNode = new SnowflakeIdGenerator(2, () -> clock.get() + 5000).nextId();
+
+        // restarted with the clock set back
+        clock.addAndGet(-500);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        generator.advancePast(recovered);
+        generator.advancePast(otherNode);
+
+        long next = generator.nextId();
+        assertTrue(next > recovered);
+        assertTrue(next < otherNode);
+    }
+
+    @Test
+    public void snowflakeGeneratorShouldEmbedNodeId() {
+        long id = new SnowflakeIdGenerator(5).nextId();
+
+        assertEquals(5, SnowflakeIdGenerator.nodeIdOf(id));
+    }
+
+    @Test
+    public void snowflakeGeneratorShouldRejectInvalidNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024));
+    }
+
+    private static void assertUniqueAcrossThreads(IdGenerator generator) throws Exception {
+        int threads = 8;
+        int idsPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<long[]>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(() -> {
+                    long[] ids = new long[idsPerThread];
+                    for (int i = 0; i < idsPerThread; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                });
+            }
+            Set<Long> seen = new HashSet<>();
+            for (Future<long[]> future : executor.invokeAll(tasks)) {
+                for (long id : future.get()) {
+                    assertTrue(seen.add(id), "duplicate id " + id);
+                }
+            }
+            assertEquals(threads * idsPerThread, seen.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package dev.kamui.clearsolutiontest.persistence;
+
+import dev.kamui.clearsolutiontest.id.BlockIdGenerator;
+import dev.kamui.clearsolutiontest.id.IdGenerator;
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserPersistenceTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void shouldRecoverChangesFromLog() throws IOException {
+        UserStore store = new UserStore();
+        UserPersistence persistence = open(store, SyncMode.GROUP);
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com"));
+        store.update(1, u -> u.toBuilder().phoneNumber("380991815459").build());
+        store.delete(2);
+        persistence.close();
+
+        UserStore recovered = new UserStore();
+        open(recovered, SyncMode.GROUP).close();
+
+        assertEquals(1, recovered.size());
+        User user = recovered.findById(1).orElseThrow();
+        assertEquals("380991815459", user.getPhoneNumber());
+        assertEquals("Odesa", user.getAddress().city());
+        assertTrue(recovered.findById(2).isEmpty());
+        assertEquals(store.version(), recovered.version());
+    }
+
+    @Test
+    public void shouldRecoverFromSnapshotAndLogTail() throws IOException {
+        UserStore store = new UserStore();
+        UserPersistence persistence = open(store, SyncMode.INTERVAL);
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com"));
+        persistence.snapshot();
+        store.delete(1);
+        store.createIfEmailAbsent(user(3, "sam@gmail.com"));
+        persistence.snapshot();
+        store.update(3, u -> u.toBuilder().email("samwise@gmail.com").build());
+        persistence.close();
+
+        UserStore recovered = new UserStore();
+        open(recovered, SyncMode.INTERVAL).close();
+
+        assertEquals(List.of(2L, 3L), recovered.findAll().map(User::getId).sorted().toList());
+        assertTrue(recovered.existsByEmail("samwise@gmail.com"));
+        assertFalse(recovered.existsByEmail("sam@gmail.com"));
+    }
+
+    @Test
+    public void shouldNotHandOutRecoveredIds() throws IOException {
+        UserStore store = new UserStore();
+        IdGenerator ids = new BlockIdGenerator(64);
+        UserPersistence persistence = open(store, ids, SyncMode.GROUP);
+        store.createIfEmailAbsent(user(ids.nextId(), "frodo@gmail.com"));
+        persistence.snapshot();
+        store.createIfEmailAbsent(user(ids.nextId(), "bilbo@gmail.com"));
+        long deleted = ids.nextId();
+        store.createIfEmailAbsent(user(deleted, "sam@gmail.com"));
+        store.delete(deleted);
+        persistence.close();
+
+        UserStore recovered = new UserStore();
+        IdGenerator recoveredIds = new BlockIdGenerator(64);
+        open(recovered, recoveredIds, SyncMode.GROUP).close();
+
+        assertEquals(deleted + 1, recoveredIds.nextId());
+    }
+
+    @Test
+    public void shouldStopAtTornRecord() throws IOException {
+        UserStore store = new UserStore();
+        UserPersistence persistence = open(store, SyncMode.GROUP);
+        store.createIfEmailAbsent(user(1, "frodo@gmail.com"));
+        store.createIfEmailAbsent(user(2, "bilbo@gmail.com"));
+        persistence.close();
+        corruptLastRecord();
+
+        UserStore recovered = new UserStore();
+        open(recovered, SyncMode.GROUP).close();
+
+        assertEquals(1, recovered.size());
+        assertTrue(recovered.findById(1).isPresent());
+    }
+
+    private UserPersistence open(UserStore store, SyncMode syncMode) throws IOException {
+        return open(store, new BlockIdGenerator(64), syncMode);
+    }
+
+    private UserPersistence open(UserStore store, IdGenerator idGenerator, SyncMode syncMode) throws IOException {
+        UserPersistence persistence = new UserPersistence(store, idGenerator, directory, 1 << 16, syncMode,
+                Duration.ofMillis(1), Duration.ofHours(1));
+        persistence.recover();
+        return persistence;
+    }
+
+    private void corruptLastRecord() throws IOException {
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.getFileName().toString().startsWith("wal-")).sorted()
+                    .reduce((first, second) -> second).orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int firstLength = buffer.getInt(0);
+            int secondRecord = Integer.BYTES * 2 + firstLength;
+            int lastByte = secondRecord + Integer.BYTES * 2 + buffer.getInt(secondRecord) - 1;
+            buffer.put(lastByte, (byte) (buffer.get(lastByte) ^ 0xFF));
+            buffer.force();
+        }
+    }
+
+    private static User user(long id, String email) {
+        return User.builder()
+                .id(id)
+                .firstName("Frodo")
+                .lastName("Baggins")
+                .email(email)
+                .birthDate(LocalDate.of(2004, 10, 31))
+                .address(new Address("Ukraine", "Odesa", "Odesa", "042445", "Street"))
+                .build();
+    }
+}
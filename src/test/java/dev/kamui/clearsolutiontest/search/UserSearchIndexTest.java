@@ -0,0 +1,149 @@
+package dev.kamui.clearsolutiontest.search;
+
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserSearchIndexTest {
+
+    private final UserStore store = new UserStore();
+    private final UserSearchIndex index = new UserSearchIndex(store, new SimpleMeterRegistry());
+
+    @Test
+    public void shouldIntersectAddressAndBirthDateFilters() {
+        store.createIfEmailAbsent(user(1, "Frodo", "Baggins", "Odesa", LocalDate.of(2001, 1, 1)));
+        store.createIfEmailAbsent(user(2, "Bilbo", "Baggins", "Odesa", LocalDate.of(1985, 1, 1)));
+        store.createIfEmailAbsent(user(3, "Samwise", "Gamgee", "Kyiv", LocalDate.of(2001, 1, 1)));
+        store.createIfEmailAbsent(user(4, "Gandalf", null, null, LocalDate.of(2001, 1, 1)));
+
+        List<User> found = index.search(new UserSearch("ukraine", "ODESA", null, null, null, null,
+                LocalDate.of(1999, 12, 31), LocalDate.of(2006, 1, 1)), 100);
+
+        assertEquals(List.of(1L), ids(found));
+    }
+
+    @Test
+    public void shouldMatchBirthDateRangeAcrossDaysMonthsAndYears() {
+        LocalDate[] birthDates = {LocalDate.of(1999, 12, 30), LocalDate.of(1999, 12, 31), LocalDate.of(2000, 1, 1),
+                LocalDate.of(2000, 2, 29), LocalDate.of(2001, 6, 15), LocalDate.of(2002, 3, 1),
+                LocalDate.of(2002, 3, 2), LocalDate.of(2002, 3, 3)};
+        for (int i = 0; i < birthDates.length; i++) {
+            store.createIfEmailAbsent(user(i + 1, "User" + i, "Baggins", "Odesa", birthDates[i]));
+        }
+
+        List<User> found = index.search(new UserSearch(null, null, null, null, null, null,
+                LocalDate.of(1999, 12, 30), LocalDate.of(2002, 3, 3)), 100);
+
+        assertEquals(List.of(2L, 3L, 4L, 5L, 6L, 7L), ids(found));
+    }
+
+    @Test
+    public void shouldFindNamesByPrefixIgnoringCase() {
+        store.createIfEmailAbsent(user(1, "Frodo", "Baggins", "Odesa", LocalDate.of(2001, 1, 1)));
+        store.createIfEmailAbsent(user(2, "Bilbo", "Bagshot", "Odesa", LocalDate.of(1985, 1, 1)));
+        store.createIfEmailAbsent(user(3, "Samwise", "Gamgee", "Odesa", LocalDate.of(2001, 1, 1)));
+
+        assertEquals(List.of(1L, 2L), ids(index.search(search(null, "bag"), 100)));
+        assertEquals(List.of(2L), ids(index.search(search("BIL", "bag"), 100)));
+        assertEquals(List.of(1L), ids(index.search(search(null, "bag"), 1)));
+        assertTrue(index.search(search(null, "baggins-"), 100).isEmpty());
+    }
+
+    @Test
+    public void shouldFollowWritesAfterFirstSearch() {
+        store.createIfEmailAbsent(user(1, "Frodo", "Baggins", "Odesa", LocalDate.of(2001, 1, 1)));
+        assertEquals(List.of(1L), ids(index.search(search(null, "Baggins"), 100)));
+
+        store.createIfEmailAbsent(user(2, "Bilbo", "Baggins", "Kyiv", LocalDate.of(1985, 1, 1)));
+        store.update(1, u -> u.toBuilder().lastName("Underhill").build());
+
+        assertEquals(List.of(2L), ids(index.search(search(null, "Baggins"), 100)));
+        assertEquals(List.of(1L), ids(index.search(search(null, "Underhill"), 100)));
+
+        store.delete(2);
+        assertTrue(index.search(search(null, "Baggins"), 100).isEmpty());
+        assertTrue(index.search(new UserSearch(null, "Kyiv", null, null, null, null, null, null), 100).isEmpty());
+    }
+
+    @Test
+    public void shouldIndexLastWriteOfUserUpdatedConcurrently() throws InterruptedException {
+        store.createIfEmailAbsent(user(1, "Frodo", "Baggins", "Odesa", LocalDate.of(2001, 1, 1)));
+        assertEquals(List.of(1L), ids(index.search(search(null, "Baggins"), 100)));
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            String lastName = "Writer" + w;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    store.update(1, u -> u.toBuilder().lastName(lastName).build());
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        String lastName = store.findById(1).orElseThrow().getLastName();
+        assertEquals(List.of(1L), ids(index.search(search(null, lastName), 100)));
+        assertTrue(index.search(search(null, "Baggins"), 100).isEmpty());
+    }
+
+    @Test
+    public void shouldNotBlockWritersWhileReadingFoundUsers() throws Exception {
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        UserStore store = new UserStore() {
+            @Override
+            public Optional<User> findById(long id) {
+                try {
+                    // another user is written while the search reads the users it found
+                    writer.submit(() -> update(2, u -> u.toBuilder().lastName("Bagshot").build()))
+                            .get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new AssertionError("Writer blocked by search", e);
+                }
+                return super.findById(id);
+            }
+        };
+        UserSearchIndex index = new UserSearchIndex(store, new SimpleMeterRegistry());
+        store.createIfEmailAbsent(user(1, "Frodo", "Baggins", "Odesa", LocalDate.of(2001, 1, 1)));
+        store.createIfEmailAbsent(user(2, "Bilbo", "Underhill", "Odesa", LocalDate.of(1985, 1, 1)));
+
+        try {
+            assertEquals(List.of(1L), ids(index.search(search(null, "Baggins"), 100)));
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    private static UserSearch search(String firstNamePrefix, String lastNamePrefix) {
+        return new UserSearch(null, null, null, null, firstNamePrefix, lastNamePrefix, null, null);
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    private static User user(long id, String firstName, String lastName, String city, LocalDate birthDate) {
+        return User.builder()
+                .id(id)
+                .firstName(firstName)
+                .lastName(lastName)
+                .email(firstName.toLowerCase() + "@gmail.com")
+                .birthDate(birthDate)
+                .address(city == null ? null : new Address("Ukraine", city, null, "042445", "Street"))
+                .build();
+    }
+}
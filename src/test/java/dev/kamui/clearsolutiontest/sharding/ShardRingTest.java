@@ -0,0 +1,46 @@
+package dev.kamui.clearsolutiontest.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRingTest {
+
+    private static final int KEYS = 30_000;
+
+    @Test
+    public void shouldSpreadKeysEvenlyAcrossShards() {
+        ShardRing ring = new ShardRing(3, 128);
+        int[] keys = new int[3];
+        for (int i = 0; i < KEYS; i++) {
+            keys[ring.shardOf("user" + i + "@gmail.com")]++;
+        }
+
+        for (int shardKeys : keys) {
+            assertTrue(Math.abs(shardKeys - KEYS / 3) < KEYS / 3 / 5, "uneven shard: " + shardKeys);
+        }
+    }
+
+    @Test
+    public void shouldMoveKeysOnlyToAddedShard() {
+        ShardRing three = new ShardRing(3, 128);
+        ShardRing four = new ShardRing(4, 128);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "user" + i + "@gmail.com";
+            int before = three.shardOf(key);
+            int after = four.shardOf(key);
+            if (before != after) {
+                assertEquals(3, after);
+                moved++;
+            }
+        }
+
+        assertTrue(Math.abs(moved - KEYS / 4) < KEYS / 4 / 5, "moved keys: " + moved);
+    }
+
+    @Test
+    public void shouldRejectEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardRing(0, 128));
+    }
+}
@@ -0,0 +1,264 @@
+package dev.kamui.clearsolutiontest.sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import dev.kamui.clearsolutiontest.ClearSolutionTestApplication;
+import dev.kamui.clearsolutiontest.admission.AdmissionInterceptor;
+import dev.kamui.clearsolutiontest.admission.AimdLimiter;
+import dev.kamui.clearsolutiontest.id.SnowflakeIdGenerator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs three sharded instances on their own ports and talks to them over HTTP.
+ */
+class ShardingTest {
+
+    private static final int INSTANCES = 3;
+    private static final String SECRET = "shire";
+
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private static final List<String> urls = new ArrayList<>();
+    private static final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ObjectMapper smileMapper = new SmileMapper();
+
+    @BeforeAll
+    public static void startInstances() throws IOException {
+        for (int i = 0; i < INSTANCES; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                urls.add("http://localhost:" + socket.getLocalPort());
+            }
+        }
+        for (int i = 0; i < INSTANCES; i++) {
+            contexts.add(new SpringApplicationBuilder(ClearSolutionTestApplication.class)
+                    .run("--server.port=" + URI.create(urls.get(i)).getPort(),
+                            "--spring.main.web-application-type=servlet",
+                            "--user.sharding.enabled=true",
+                            "--user.sharding.instances=" + String.join(",", urls),
+                            "--user.id.generator=snowflake",
+                            "--user.id.node-id=" + i,
+                            "--user.sharding.secret=" + SECRET,
+                            // bulk lines reach the other shards in several batches
+                            "--user.bulk.batch-size=2",
+                            "--management.metrics.use-global-registry=false"));
+        }
+    }
+
+    @AfterAll
+    public static void stopInstances() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    public void shouldKeepUsersOnShardOfTheirEmail() throws Exception {
+        ShardRing ring = new ShardRing(INSTANCES, 128);
+        Set<Long> shards = new HashSet<>();
+        for (int i = 0; i < 12; i++) {
+            String email = "hobbit" + i + "@gmail.com";
+            HttpResponse<String> created = send(i % INSTANCES, "POST", "/api/v1/users", user("Frodo", email, "2001-01-01"), false);
+            assertEquals(201, created.statusCode());
+            long id = json(created).path("data").path("id").asLong();
+            int shard = (int) SnowflakeIdGenerator.nodeIdOf(id);
+            assertEquals(ring.shardOf(email), shard);
+            shards.add((long) shard);
+
+            for (int instance = 0; instance < INSTANCES; instance++) {
+                HttpResponse<String> found = send(instance, "GET", "/api/v1/users/" + id, null, false);
+                assertEquals(200, found.statusCode());
+                assertEquals(email, json(found).path("data").path("email").asText());
+                // the user is stored on its own shard only
+                assertEquals(instance == shard ? 200 : 404, send(instance, "GET", "/api/v1/users/" + id, null, true).statusCode());
+            }
+            assertEquals(400, send((i + 1) % INSTANCES, "POST", "/api/v1/users", user("Bilbo", email, "2001-01-01"), false).statusCode());
+            // a client can't skip the routing without the secret
+            assertEquals(403, client.send(HttpRequest.newBuilder(URI.create(urls.get(i % INSTANCES) + "/api/v1/users/" + id))
+                    .header(ShardClient.LOCAL_HEADER, "true")
+                    .build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+        assertEquals(INSTANCES, shards.size());
+    }
+
+    @Test
+    public void shouldMergeRangePagesOfAllShards() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String email = "range" + i + "@gmail.com";
+            String birthDate = LocalDate.of(1950, 1, 1).plusDays(i % 7).toString();
+            HttpResponse<String> created = send(i % INSTANCES, "POST", "/api/v1/users", user("Bilbo", email, birthDate), false);
+            expected.add(birthDate + "/" + json(created).path("data").path("id").asLong());
+        }
+        expected.sort(Comparator.naturalOrder());
+
+        List<String> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            HttpResponse<String> page = send(1, "GET", "/api/v1/users?From=1949-12-31&To=1950-01-08&limit=6"
+                    + (cursor == null ? "" : "&cursor=" + cursor), null, false);
+            assertEquals(200, page.statusCode());
+            JsonNode body = json(page);
+            assertTrue(body.path("data").size() <= 6);
+            body.path("data").forEach(user -> pages.add(user.path("birth_date").asText() + "/" + user.path("id").asLong()));
+            cursor = body.hasNonNull("next_cursor") ? body.path("next_cursor").asText() : null;
+        } while (cursor != null);
+
+        assertEquals(expected, pages);
+
+        // statistics of every shard add up, while each shard only counts its own users
+        HttpResponse<String> stats = send(2, "GET", "/api/v1/users/stats", null, false);
+        assertEquals(200, stats.statusCode());
+        assertEquals(20, json(stats).path("data").path("by_birth_year").path("1950").asInt());
+        int local = 0;
+        for (int instance = 0; instance < INSTANCES; instance++) {
+            local += json(send(instance, "GET", "/api/v1/users/stats", null, true))
+                    .path("data").path("by_birth_year").path("1950").asInt();
+        }
+        assertEquals(20, local);
+
+        // a client that accepts Smile gets the merged range and statistics in Smile
+        HttpResponse<byte[]> smileRange = sendAccepting(0, "/api/v1/users?From=1949-12-31&To=1950-01-08", "application/x-jackson-smile");
+        assertEquals("application/x-jackson-smile", smileRange.headers().firstValue("Content-Type").orElseThrow());
+        assertEquals(20, smileMapper.readTree(smileRange.body()).path("data").size());
+        HttpResponse<byte[]> smileStats = sendAccepting(0, "/api/v1/users/stats", "application/x-jackson-smile");
+        assertEquals(20, smileMapper.readTree(smileStats.body()).path("data").path("by_birth_year").path("1950").asInt());
+    }
+
+    @Test
+    public void shouldRouteUpdatesDeletesAndBulkLinesByShard() throws Exception {
+        ShardRing ring = new ShardRing(INSTANCES, 128);
+        StringBuilder bulk = new StringBuilder();
+        for (int i = 0; i < 9; i++) {
+            bulk.append(user("Samwise", "bulk" + i + "@gmail.com", "1990-05-05")).append('\n');
+        }
+        bulk.append("{\"first_name\": \"Gollum\"}\n");
+
+        HttpResponse<String> results = client.send(HttpRequest.newBuilder(URI.create(urls.get(0) + "/api/v1/users/bulk"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(bulk.toString()))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        JsonNode body = json(results);
+        assertEquals(9, body.path("created").asInt());
+        assertEquals(1, body.path("failed").asInt());
+        Map<Integer, Long> ids = new TreeMap<>();
+        body.path("results").forEach(result -> ids.put(result.path("line").asInt(), result.path("id").asLong()));
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), List.copyOf(ids.keySet()));
+        for (int line = 1; line <= 9; line++) {
+            assertEquals(ring.shardOf("bulk" + (line - 1) + "@gmail.com"), SnowflakeIdGenerator.nodeIdOf(ids.get(line)));
+        }
+
+        long id = ids.get(1);
+        int shard = (int) SnowflakeIdGenerator.nodeIdOf(id);
+        String sameShardEmail = emailOnShard(ring, shard, true);
+        String otherShardEmail = emailOnShard(ring, shard, false);
+        assertEquals(200, send((shard + 1) % INSTANCES, "PUT", "/api/v1/users/" + id,
+                "{\"email\": \"" + sameShardEmail + "\"}", false).statusCode());
+        assertEquals(400, send(shard, "PUT", "/api/v1/users/" + id,
+                "{\"email\": \"" + otherShardEmail + "\"}", false).statusCode());
+
+        StringBuilder batch = new StringBuilder();
+        for (int line = 1; line <= 9; line++) {
+            batch.append("{\"id\": ").append(ids.get(line)).append(", \"phone_number\": \"380991815459\"}\n");
+        }
+        batch.append("{\"id\": ").append(id).append(", \"email\": \"").append(otherShardEmail).append("\"}\n");
+        JsonNode patched = json(patchBatch(1, "", batch.toString()));
+        assertEquals(9, patched.path("updated").asInt());
+        assertEquals("email belongs to another shard", patched.path("results").get(9).path("message").asText());
+        for (int line = 1; line <= 9; line++) {
+            assertEquals("380991815459", json(send(0, "GET", "/api/v1/users/" + ids.get(line), null, false))
+                    .path("data").path("phone_number").asText());
+        }
+        // the first line's shard serves the batch itself, the others stream it there
+        for (int instance = 0; instance < INSTANCES; instance++) {
+            assertEquals(400, patchBatch(instance, "?atomic=true", batch.toString()).statusCode());
+        }
+        assertEquals(200, patchBatch((shard + 1) % INSTANCES, "?atomic=true",
+                "{\"id\": " + id + ", \"first_name\": \"Samwise\"}\n").statusCode());
+
+        HttpResponse<String> found = send(2, "GET", "/api/v1/users/search?first_name=sam&From=1990-01-01&To=1991-01-01", null, false);
+        Set<Long> foundIds = new HashSet<>();
+        json(found).path("data").forEach(user -> foundIds.add(user.path("id").asLong()));
+        assertEquals(ids.values().stream().filter(bulkId -> bulkId != 0).collect(Collectors.toSet()), foundIds);
+
+        // a shard that sheds a forwarded write tells the client when to retry
+        AimdLimiter writes = contexts.get(shard).getBean(AdmissionInterceptor.class).writeLimiter();
+        int held = 0;
+        while (writes.tryAcquire() >= 0) {
+            held++;
+        }
+        HttpResponse<String> shed = send((shard + 2) % INSTANCES, "DELETE", "/api/v1/users/" + id, null, false);
+        for (int i = 0; i < held; i++) {
+            writes.release();
+        }
+        assertEquals(503, shed.statusCode());
+        assertEquals("1", shed.headers().firstValue("Retry-After").orElseThrow());
+
+        assertEquals(204, send((shard + 2) % INSTANCES, "DELETE", "/api/v1/users/" + id, null, false).statusCode());
+        assertEquals(404, send(shard, "GET", "/api/v1/users/" + id, null, false).statusCode());
+    }
+
+    private static String emailOnShard(ShardRing ring, int shard, boolean same) {
+        for (int i = 0; ; i++) {
+            String email = "moved" + i + "@gmail.com";
+            if ((ring.shardOf(email) == shard) == same) {
+                return email;
+            }
+        }
+    }
+
+    private static String user(String firstName, String email, String birthDate) {
+        return """
+                {"first_name": "%s", "last_name": "Baggins", "email": "%s", "birth_data": "%s"}""".formatted(firstName, email, birthDate);
+    }
+
+    private static HttpResponse<String> send(int instance, String method, String path, String body, boolean local)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(urls.get(instance) + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (body != null) {
+            request.header("Content-Type", "application/json");
+        }
+        if (local) {
+            request.header(ShardClient.LOCAL_HEADER, SECRET);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<byte[]> sendAccepting(int instance, String path, String accept) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(urls.get(instance) + path))
+                .header("Accept", accept)
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static HttpResponse<String> patchBatch(int instance, String query, String lines) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(urls.get(instance) + "/api/v1/users/batch" + query))
+                .header("Content-Type", "application/x-ndjson")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(lines))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JsonNode json(HttpResponse<String> response) throws IOException {
+        return objectMapper.readTree(response.body());
+    }
+}
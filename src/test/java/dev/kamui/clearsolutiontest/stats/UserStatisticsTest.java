@@ -0,0 +1,110 @@
+package dev.kamui.clearsolutiontest.stats;
+
+import dev.kamui.clearsolutiontest.model.Address;
+import dev.kamui.clearsolutiontest.model.User;
+import dev.kamui.clearsolutiontest.storage.UserStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserStatisticsTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 5, 10);
+
+    private final UserStore store = new UserStore();
+
+    @Test
+    public void shouldCountStoredUsersAndFollowLaterWrites() {
+        store.createIfEmailAbsent(user(1, "Ukraine", LocalDate.of(2010, 1, 1)));
+        store.createIfEmailAbsent(user(2, "Ukraine", LocalDate.of(2000, 5, 10)));
+        store.createIfEmailAbsent(user(3, "Poland", LocalDate.of(1950, 7, 1)));
+        UserStatistics statistics = statistics(TODAY);
+
+        UserStats stats = statistics.stats();
+        assertEquals(3, stats.total());
+        assertEquals(Map.of("0-17", 1L, "18-27", 1L, "68+", 1L), stats.byAgeBand());
+        assertEquals(Map.of(1950, 1L, 2000, 1L, 2010, 1L), stats.byBirthYear());
+        assertEquals(Map.of("Poland", 1L, "Ukraine", 2L), stats.byCountry());
+
+        store.update(2, UserStore.ANY_VERSION, user -> user(2, "Poland", LocalDate.of(1980, 3, 3)));
+        store.delete(1);
+        store.createIfEmailAbsent(user(4, null, LocalDate.of(1990, 12, 31)));
+
+        stats = statistics.stats();
+        assertEquals(3, stats.total());
+        assertEquals(Map.of("28-37", 1L, "38-47", 1L, "68+", 1L), stats.byAgeBand());
+        assertEquals(Map.of(1950, 1L, 1980, 1L, 1990, 1L), stats.byBirthYear());
+        assertEquals(Map.of("Poland", 2L), stats.byCountry());
+    }
+
+    @Test
+    public void shouldPutAgesInBandsLikeTheMinAgeCheck() {
+        // turns 18 on February 28 of a year without February 29
+        store.createIfEmailAbsent(user(1, null, LocalDate.of(2000, 2, 29)));
+        store.createIfEmailAbsent(user(2, null, LocalDate.of(2000, 3, 1)));
+        store.createIfEmailAbsent(user(3, null, LocalDate.of(1990, 3, 1)));
+
+        UserStats stats = statistics(LocalDate.of(2018, 2, 28)).stats();
+
+        assertEquals(Map.of("0-17", 1L, "18-27", 2L), stats.byAgeBand());
+    }
+
+    @Test
+    public void shouldCountEveryUserOnceWhileWritesRaceWithTheFirstRequest() throws InterruptedException {
+        for (int i = 1; i <= 20_000; i++) {
+            store.createIfEmailAbsent(user(i, "Country" + i % 7, LocalDate.of(1950 + i % 60, 1 + i % 12, 1)));
+        }
+        UserStatistics statistics = statistics(TODAY);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 3; w++) {
+            int first = 100_000 * (w + 1);
+            Thread writer = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 5_000; i++) {
+                    store.createIfEmailAbsent(user(first + i, "Country" + i % 5, LocalDate.of(1960 + i % 40, 6, 1)));
+                    long id = 1 + random.nextInt(20_000);
+                    if (random.nextBoolean()) {
+                        store.delete(id);
+                    } else {
+                        store.update(id, user -> user(id, "Moved", LocalDate.of(1970 + random.nextInt(30), 2, 2)));
+                    }
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        statistics.stats();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        UserStats expected = statistics(TODAY).stats();
+        UserStats stats = statistics.stats();
+        assertEquals(store.size(), stats.total());
+        assertEquals(expected, stats);
+    }
+
+    private UserStatistics statistics(LocalDate today) {
+        return new UserStatistics(store, Clock.fixed(today.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC),
+                18, 10, 6);
+    }
+
+    private static User user(long id, String country, LocalDate birthDate) {
+        return User.builder()
+                .id(id)
+                .firstName("User" + id)
+                .lastName("Baggins")
+                .email("user" + id + "@gmail.com")
+                .birthDate(birthDate)
+                .address(country == null ? null : new Address(country, "City", null, null, null))
+                .build();
+    }
+}
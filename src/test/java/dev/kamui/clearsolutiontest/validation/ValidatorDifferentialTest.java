@@ -0,0 +1,78 @@
+package dev.kamui.clearsolutiontest.validation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the hand-written validators against the {@code @Pattern} regexes they replaced, on random strings
+ * made mostly of the characters the grammars care about and on random edits of valid values.
+ */
+class ValidatorDifferentialTest {
+
+    private static final Pattern EMAIL = Pattern.compile("[\\w-.]+@([\\w-]+\\.)+[\\w-]{2,4}");
+    private static final Pattern PHONE = Pattern.compile("^[+]?[(]?[0-9]{3}[)]?[-\\s.]?[0-9]{3}[-\\s.]?[0-9]{4,6}$");
+
+    private static final String EMAIL_ALPHABET = "aZ9_-.@@..xé \n";
+    private static final String PHONE_ALPHABET = "0123456789+()-. \t\n\u000Ba";
+    private static final String[] VALID_EMAILS = {"frodo@gmail.com", "a.b-c_d@mail.co.uk", "x@y.io", "-@_.abcd"};
+    private static final String[] VALID_PHONES = {"380991815459", "+(380)991815459", "123-456-7890", "(123) 456.78901"};
+    private static final int CASES = 200_000;
+
+    @Test
+    public void emailValidatorShouldAgreeWithPattern() {
+        assertAgrees(EMAIL, EmailAddressValidator::isEmailAddress, EMAIL_ALPHABET, VALID_EMAILS);
+    }
+
+    @Test
+    public void phoneValidatorShouldAgreeWithPattern() {
+        assertAgrees(PHONE, PhoneNumberValidator::isPhoneNumber, PHONE_ALPHABET, VALID_PHONES);
+    }
+
+    @Test
+    public void validatorsShouldAcceptNull() {
+        assertTrue(new EmailAddressValidator().isValid(null, null));
+        assertTrue(new PhoneNumberValidator().isValid(null, null));
+    }
+
+    private static void assertAgrees(Pattern pattern, Predicate<String> validator, String alphabet, String[] valid) {
+        SplittableRandom random = new SplittableRandom(42);
+        int accepted = 0;
+        for (int i = 0; i < CASES; i++) {
+            String value = i % 2 == 0
+                    ? randomString(random, alphabet)
+                    : mutate(random, valid[random.nextInt(valid.length)], alphabet);
+            boolean expected = pattern.matcher(value).matches();
+            assertEquals(expected, validator.test(value), () -> "disagree on \"" + value + "\"");
+            accepted += expected ? 1 : 0;
+        }
+        // both outcomes must be well covered for the agreement to mean something
+        assertTrue(accepted > CASES / 20 && accepted < CASES - CASES / 20, "accepted " + accepted);
+    }
+
+    private static String randomString(SplittableRandom random, String alphabet) {
+        StringBuilder value = new StringBuilder();
+        for (int length = random.nextInt(20); length > 0; length--) {
+            value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return value.toString();
+    }
+
+    private static String mutate(SplittableRandom random, String valid, String alphabet) {
+        StringBuilder value = new StringBuilder(valid);
+        for (int edits = random.nextInt(3); edits > 0 && !value.isEmpty(); edits--) {
+            int at = random.nextInt(value.length());
+            char c = alphabet.charAt(random.nextInt(alphabet.length()));
+            switch (random.nextInt(3)) {
+                case 0 -> value.insert(at, c);
+                case 1 -> value.deleteCharAt(at);
+                default -> value.setCharAt(at, c);
+            }
+        }
+        return value.toString();
+    }
+}